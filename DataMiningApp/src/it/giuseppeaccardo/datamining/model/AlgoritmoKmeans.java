@@ -0,0 +1,310 @@
+package it.giuseppeaccardo.datamining.model;
+
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * <h1>Algoritmo K-Means!</h1>
+ * Scheletro comune delle varianti accelerate del K-Means (pattern Strategy per DataMining, Template Method per le
+ * sottoclassi). Il ciclo dell'algoritmo è sempre lo stesso: si assegnano i record ai centroidi, si ricalcolano i centroidi
+ * come media dei record assegnati e si ripete finchè nessun record cambia cluster. Le varianti differiscono solo nel modo
+ * in cui assegnano un record: usando dei limiti (bound) sulle distanze, ricavati dalla disuguaglianza triangolare, molte
+ * distanze possono essere scartate senza calcolarle perchè non possono cambiare il cluster del record.
+ * <br><br>
+ * La classe si occupa di dividere i record in intervalli elaborati in parallelo dal pool Fork/Join (come TaskAssegnazione),
+ * di accumulare nello stesso passaggio le somme delle features per cluster, di aggiornare i centroidi e di misurare lo
+ * spostamento di ogni centroide, che le sottoclassi usano per aggiornare i propri limiti. Le sottoclassi implementano:
+ * <ul>
+ * <li>inizializza: allocazione delle strutture per record (limiti)</li>
+ * <li>preparaIterazione: calcoli sui soli centroidi prima di ogni passaggio (eseguita da un solo thread)</li>
+ * <li>assegnaIntervallo: assegnazione dei record di un intervallo (eseguita in parallelo)</li>
+ * </ul>
+ * Le somme sono accumulate con la stessa divisione in intervalli del K-Means di DataMining, quindi a parità di centroidi
+ * iniziali si ottengono gli stessi cluster. Un'istanza esegue un solo K-Means alla volta.
+ * @author Giuseppe Accardo
+ * @version 1.0
+ * @since   14-02-2017
+ * @see DataMining
+ * @see TaskAssegnazione
+ * @see KmeansElkan
+ * @see KmeansHamerly
+ * @see KmeansYinyang
+ */
+public abstract class AlgoritmoKmeans
+{
+	/** Numero massimo di elementi di un array allocabile dalla JVM **/
+	static final int MASSIMO_ARRAY = Integer.MAX_VALUE - 8;
+	/** Dataset da clusterizzare (in sola lettura) **/
+	protected Dataset dataset;
+	/** Numero di record, di cluster e di features **/
+	protected int n, k, d;
+	/** Centroidi correnti, aggiornati tra un passaggio e l'altro **/
+	protected double[][] centroidi;
+	/** Indice del cluster di ogni record **/
+	protected int[] etichette;
+	/** Spostamento di ogni centroide nell'ultimo aggiornamento **/
+	protected double[] spostamenti;
+	/** Numero di passaggi di assegnazione eseguiti **/
+	private int iterazioni;
+	/** Numero di distanze record-centroide calcolate **/
+	private long distanzeCalcolate;
+	/** Numero di record di ogni cluster nell'ultima assegnazione **/
+	private int[] conteggi;
+
+	/**
+	 * Esegue il K-Means (Template Method) partendo dai centroidi dati, fino a quando nessun record cambia cluster.
+	 * @param dataset dataset da clusterizzare
+	 * @param centroidi centroidi iniziali, sovrascritti con i centroidi finali
+	 * @param etichette array (lungo quanto i record) in cui scrivere il cluster di ogni record
+	 * @return numero di iterazioni eseguite
+	 * @throws ArithmeticException un cluster è rimasto vuoto, l'algoritmo non può convergere
+	 * @throws IllegalArgumentException le strutture per record della variante superano la dimensione massima di un array
+	 */
+	public final int esegui(Dataset dataset, double[][] centroidi, int[] etichette) throws ArithmeticException
+	{
+		this.dataset = dataset;
+		this.centroidi = centroidi;
+		this.etichette = etichette;
+		this.n = dataset.getNumRecord();
+		this.k = centroidi.length;
+		this.d = dataset.getFeatureUsate().size();
+		this.spostamenti = new double[k];
+		iterazioni = 0;
+		distanzeCalcolate = 0;
+		inizializza();
+		/* Il primo passaggio calcola tutte le distanze per costruire i limiti */
+		Accumulatore accumulatore = passaggio(true);
+		while(true)
+		{
+			aggiornaCentroidi(accumulatore);
+			accumulatore = passaggio(false);
+			/* Nessun record ha cambiato cluster: i centroidi resterebbero identici */
+			if(accumulatore.cambiati == 0)
+				break;
+		}
+		conteggi = accumulatore.conteggi;
+		return iterazioni;
+	}
+
+	/**
+	 * Alloca le strutture per record della variante (chiamata una volta all'inizio di ogni esecuzione)
+	 */
+	protected abstract void inizializza();
+
+	/**
+	 * Calcola la dimensione di un array con un numero fissato di valori per record (es. i limiti inferiori) verificando
+	 * che non superi la dimensione massima di un array: in questo caso anche gli indici i*valoriPerRecord+c restano
+	 * nell'intervallo degli int.
+	 * @param valoriPerRecord valori memorizzati per ogni record
+	 * @return dimensione dell'array (n·valoriPerRecord)
+	 * @throws IllegalArgumentException n·valoriPerRecord supera la dimensione massima di un array
+	 */
+	protected final int dimensionePerRecord(int valoriPerRecord)
+	{
+		long dimensione = (long) n * valoriPerRecord;
+		if(dimensione > MASSIMO_ARRAY)
+			throw new IllegalArgumentException(getClass().getSimpleName() + ": " + n + " record per " + valoriPerRecord
+											   + " limiti (" + dimensione + ") superano la dimensione massima di un array;"
+											   + " usare KmeansHamerly, che memorizza 2 valori per record");
+		return (int) dimensione;
+	}
+
+	/**
+	 * Calcoli sui soli centroidi da eseguire prima di ogni passaggio (es. distanze tra centroidi)
+	 * @param primo true se è il primo passaggio
+	 */
+	protected void preparaIterazione(boolean primo) {}
+
+	/**
+	 * Assegna i record dell'intervallo aggiornando etichette e limiti. Ogni record, con il cluster scelto, deve essere
+	 * aggiunto all'accumulatore, e ogni distanza record-centroide calcolata con il metodo distanzaQuadrata().
+	 * @param inizio primo record dell'intervallo
+	 * @param fine record successivo all'ultimo dell'intervallo
+	 * @param primo true nel primo passaggio, in cui nessun limite è ancora valido
+	 * @param accumulatore accumulatore locale dell'intervallo
+	 */
+	protected abstract void assegnaIntervallo(int inizio, int fine, boolean primo, Accumulatore accumulatore);
+
+	/**
+	 * Distanza euclidea al quadrato tra un record e un centroide, contata nelle statistiche. Il centroide piu vicino
+	 * va scelto confrontando i quadrati, come nel K-Means classico: la radice quadrata può rendere uguali due distanze
+	 * che differiscono per un arrotondamento, e cambiare il cluster scelto.
+	 * @param punto record
+	 * @param cluster indice del centroide
+	 * @param accumulatore accumulatore dell'intervallo
+	 * @return distanza euclidea al quadrato
+	 */
+	protected final double distanzaQuadrata(double[] punto, int cluster, Accumulatore accumulatore)
+	{
+		accumulatore.distanze++;
+		return KernelDistanza.distanzaQuadrata(punto, centroidi[cluster]);
+	}
+
+	/**
+	 * Esegue un passaggio di assegnazione in parallelo su tutti i record
+	 * @param primo true se è il primo passaggio
+	 * @return accumulatore totale del passaggio
+	 */
+	private Accumulatore passaggio(boolean primo)
+	{
+		preparaIterazione(primo);
+		TaskIntervallo task = new TaskIntervallo(0, n, TaskAssegnazione.soglia(n), primo);
+		PoolCalcolo.get().invoke(task);
+		iterazioni++;
+		distanzeCalcolate += task.accumulatore.distanze;
+		return task.accumulatore;
+	}
+
+	/**
+	 * Sostituisce i centroidi con la media dei record assegnati e ne misura lo spostamento
+	 * @param accumulatore accumulatore dell'ultimo passaggio
+	 * @throws ArithmeticException un cluster è rimasto vuoto
+	 */
+	private void aggiornaCentroidi(Accumulatore accumulatore) throws ArithmeticException
+	{
+		for(int j=0; j<k; j++)
+		{
+			if(accumulatore.conteggi[j] == 0)
+				throw new ArithmeticException("Cluster " + j + " vuoto");
+			double[] centroide = centroidi[j];
+			double spostamento = 0;
+			for(int f=0; f<d; f++)
+			{
+				double nuovo = accumulatore.somme[j * d + f] / accumulatore.conteggi[j];
+				spostamento += (nuovo - centroide[f]) * (nuovo - centroide[f]);
+				centroide[f] = nuovo;
+			}
+			spostamenti[j] = Math.sqrt(spostamento);
+		}
+	}
+
+	/**
+	 * Ottieni il numero di iterazioni (passaggi di assegnazione) dell'ultima esecuzione
+	 * @return iterazioni
+	 */
+	public int getIterazioni()
+	{
+		return iterazioni;
+	}
+
+	/**
+	 * Ottieni il numero di distanze record-centroide calcolate nell'ultima esecuzione
+	 * @return distanze calcolate
+	 */
+	public long getDistanzeCalcolate()
+	{
+		return distanzeCalcolate;
+	}
+
+	/**
+	 * Ottieni il numero di distanze record-centroide evitate grazie ai limiti, rispetto alle n·k di ogni
+	 * iterazione del K-Means classico
+	 * @return distanze evitate
+	 */
+	public long getDistanzeEvitate()
+	{
+		return (long)iterazioni * n * k - distanzeCalcolate;
+	}
+
+	/**
+	 * Ottieni il numero di record di ogni cluster nell'assegnazione finale
+	 * @return conteggi per cluster
+	 */
+	public int[] getConteggi()
+	{
+		return conteggi;
+	}
+
+	/**
+	 * <h1>Accumulatore!</h1>
+	 * Risultati parziali di un intervallo di record: record e somme delle features per cluster, record che hanno cambiato
+	 * cluster e distanze calcolate. Ogni intervallo ha il proprio accumulatore, quindi i thread non condividono nulla.
+	 */
+	protected static final class Accumulatore
+	{
+		/** Numero di record per cluster **/
+		final int[] conteggi;
+		/** Somma delle features per cluster (cluster j, feature f in posizione j*d+f) **/
+		final double[] somme;
+		/** Numero di record che hanno cambiato cluster **/
+		int cambiati;
+		/** Numero di distanze record-centroide calcolate **/
+		long distanze;
+
+		Accumulatore(int k, int d)
+		{
+			conteggi = new int[k];
+			somme = new double[k * d];
+		}
+
+		/**
+		 * Aggiunge un record al cluster
+		 * @param cluster cluster assegnato
+		 * @param punto features del record
+		 */
+		void aggiungi(int cluster, double[] punto)
+		{
+			conteggi[cluster]++;
+			int base = cluster * punto.length;
+			for(int f=0; f<punto.length; f++)
+				somme[base + f] += punto[f];
+		}
+
+		/**
+		 * Conta un record che ha cambiato cluster
+		 */
+		void cambiato()
+		{
+			cambiati++;
+		}
+
+		/**
+		 * Somma un altro accumulatore a questo
+		 * @param altro accumulatore da sommare
+		 */
+		void unisci(Accumulatore altro)
+		{
+			for(int j=0; j<conteggi.length; j++)
+				conteggi[j] += altro.conteggi[j];
+			for(int j=0; j<somme.length; j++)
+				somme[j] += altro.somme[j];
+			cambiati += altro.cambiati;
+			distanze += altro.distanze;
+		}
+	}
+
+	/**
+	 * Compito Fork/Join che divide i record a metà fino alla soglia e li fa assegnare alla variante
+	 */
+	@SuppressWarnings("serial")
+	private final class TaskIntervallo extends RecursiveAction
+	{
+		private final int inizio, fine, soglia;
+		private final boolean primo;
+		private Accumulatore accumulatore;
+
+		TaskIntervallo(int inizio, int fine, int soglia, boolean primo)
+		{
+			this.inizio = inizio;
+			this.fine = fine;
+			this.soglia = soglia;
+			this.primo = primo;
+		}
+
+		@Override
+		protected void compute()
+		{
+			if(fine - inizio <= soglia)
+			{
+				accumulatore = new Accumulatore(k, d);
+				assegnaIntervallo(inizio, fine, primo, accumulatore);
+				return;
+			}
+			int meta = (inizio + fine) >>> 1;
+			TaskIntervallo sinistra = new TaskIntervallo(inizio, meta, soglia, primo);
+			TaskIntervallo destra = new TaskIntervallo(meta, fine, soglia, primo);
+			invokeAll(sinistra, destra);
+			accumulatore = sinistra.accumulatore;
+			accumulatore.unisci(destra.accumulatore);
+		}
+	}
+}
@@ -1,73 +1,139 @@
 package it.giuseppeaccardo.datamining.model;
 
-import java.util.ArrayList;
+import java.util.concurrent.RecursiveAction;
+
 import it.giuseppeaccardo.datamining.model.Cluster;
 import it.giuseppeaccardo.datamining.model.Dataset;
 /**
  * <h1>CalcolatoreCentroideThread!</h1>
- * Classe necessaria per l'esecuzione dei thread in parallelo. Tale implementa l'interfacca Runnable di cui
- * si riscrive il metodo run(), necessario per il thread poichè saranno inserite le operazioni che tale dovrà eseguire.
- * In questo caso, i thread in parallelo, riceveranno un cluster su cui effettaure il calcolo del centroide utilizzando
- * la media aritmetica e tenendo conto di quanti e quali elementi sono inseriti per ogni cluster.
+ * Compito Fork/Join per il calcolo dei centroidi. Invece di un thread per cluster (parallelismo limitato a k e un thread
+ * creato ad ogni iterazione), il lavoro è diviso per intervalli di record ed eseguito dal pool persistente: ogni
+ * intervallo accumula, per ogni cluster, il numero di record e la somma delle features secondo le etichette
+ * dell'assegnazione, e gli accumulatori sono sommati risalendo l'albero dei compiti. Il centroide di ogni cluster è
+ * infine la media aritmetica dei suoi record.
+ * <br><br>
+ * Il dataset e le etichette sono campi del compito (in sola lettura) e non variabili statiche condivise, quindi piu
+ * calcoli possono essere eseguiti contemporaneamente su dataset diversi.
  * @author Giuseppe Accardo
  * @version 1.0
  * @since   14-02-2017
  * @see DataMining
  * @see Cluster
  * @see Dataset
+ * @see PoolCalcolo
  */
-public class CalcolatoreCentroideThread implements Runnable {
-	private Cluster cluster;
-	private static Dataset dataset; // Condivisa tra thread
+@SuppressWarnings("serial")
+public class CalcolatoreCentroideThread extends RecursiveAction
+{
+	/** Dataset (in sola lettura) **/
+	private final Dataset dataset;
+	/** Indice del cluster di ogni record (in sola lettura) **/
+	private final int[] etichette;
+	/** Numero di cluster **/
+	private final int k;
+	/** Intervallo di record del task **/
+	private final int inizio, fine;
+	/** Dimensione sotto la quale l'intervallo non viene piu diviso **/
+	private final int soglia;
+	/** Numero di record di ogni cluster nell'intervallo **/
+	private int[] conteggi;
+	/** Somma delle features dei record di ogni cluster (cluster j, feature f in posizione j*d+f) **/
+	private double[] somme;
+
 	/**
-	 * Costruttore che associa il cluster su cui dovrà lavorare il thread
-	 * @param cluster cluster
-	 * @return CalcolatoreCentroideThread sara' l'instanza di Runnable che servirà al costrutture
-	 * Thread() per capire cosa dovrà effettuare il thread all'invocazione del metodo start.
+	 * Costruttore del compito su un intervallo di record
+	 * @param dataset dataset dei record
+	 * @param etichette indice del cluster di ogni record
+	 * @param k numero di cluster
+	 * @param inizio primo record dell'intervallo
+	 * @param fine record successivo all'ultimo dell'intervallo
+	 * @param soglia dimensione minima di un intervallo da dividere
 	 */
-	public CalcolatoreCentroideThread(Cluster cluster)
-	{	
-		this.cluster = cluster;
+	public CalcolatoreCentroideThread(Dataset dataset, int[] etichette, int k, int inizio, int fine, int soglia)
+	{
+		this.dataset = dataset;
+		this.etichette = etichette;
+		this.k = k;
+		this.inizio = inizio;
+		this.fine = fine;
+		this.soglia = Math.max(soglia, 1);
 	}
-	
+
 	/**
-	 * Implementazione del metodo run ereditato da runnable. Per ogni cluster, verrà assegnato un nuovo centroide, calcolato
-	 * sulla media aritmetica degli elementi che esso contiene.
+	 * Calcola sul pool i centroidi dei k cluster a partire dalle etichette di tutti i record
+	 * @param dataset dataset dei record
+	 * @param etichette indice del cluster di ogni record
+	 * @param k numero di cluster
+	 * @return centroidi dei cluster; un cluster vuoto ottiene un centroide indefinito (NaN)
 	 */
-	@Override
-	public void run() {
-		double sumNew;		
-		//Per ogni cluster
-		cluster.centroide.clear(); 
-		ArrayList<Double> newCentroide = new ArrayList<Double>(); //centroide e' ad esempio una tripla di faetures
+	public static double[][] calcola(Dataset dataset, int[] etichette, int k)
+	{
+		CalcolatoreCentroideThread calcolo = new CalcolatoreCentroideThread(dataset, etichette, k, 0, etichette.length,
+																			TaskAssegnazione.soglia(etichette.length));
+		PoolCalcolo.get().invoke(calcolo);
+		return calcolo.getCentroidi();
+	}
 
-		//per ogni colonna / feature
-		for(int iFeature = 0; iFeature<getDataset().getFeatureUsate().size(); iFeature++)
+	@Override
+	protected void compute()
+	{
+		if(fine - inizio <= soglia)
 		{
-			sumNew = 0;
-			//Per ogni record/colonna contenuto dal cluster, calcola la media
-    		for(int iElemento=0; iElemento< cluster.getIndiciInseriti().size(); iElemento++)
-    		{	
-    			sumNew += dataset.getCella(cluster.getIndiciInseriti().get(iElemento), iFeature); 
-    		}
-    		/* Aggiungi il centroide medio. Se il centroide è individuato da 3 feature, tale procedimento sara ripetuto
-    		 * 3 volte*/
-    		newCentroide.add(sumNew/cluster.getIndiciInseriti().size());
+			accumula();
+			return;
 		}
-		/* Setta centroide finale */
-		cluster.setCentroide(newCentroide);
+		int meta = (inizio + fine) >>> 1;
+		CalcolatoreCentroideThread sinistra = new CalcolatoreCentroideThread(dataset, etichette, k, inizio, meta, soglia);
+		CalcolatoreCentroideThread destra = new CalcolatoreCentroideThread(dataset, etichette, k, meta, fine, soglia);
+		invokeAll(sinistra, destra);
+		/* Unisci gli accumulatori dei due sotto-compiti */
+		conteggi = sinistra.conteggi;
+		for(int j=0; j<conteggi.length; j++)
+			conteggi[j] += destra.conteggi[j];
+		somme = sinistra.somme;
+		for(int j=0; j<somme.length; j++)
+			somme[j] += destra.somme[j];
 	}
+
 	/**
-	 * Ottieni il dataset condiviso e static
-	 * @return Dataset dataset condiviso thread**/
-	public static Dataset getDataset() {
-		return dataset;
+	 * Accumula direttamente i record dell'intervallo
+	 */
+	private void accumula()
+	{
+		int d = dataset.getFeatureUsate().size();
+		conteggi = new int[k];
+		somme = new double[k * d];
+		double[] punto = new double[d];
+		for(int i=inizio; i<fine; i++)
+		{
+			int base = etichette[i] * d;
+			dataset.getRecord(i, punto);
+			conteggi[etichette[i]]++;
+			for(int f=0; f<d; f++)
+				somme[base + f] += punto[f];
+		}
 	}
+
 	/**
-	 * Setta il dataset condiviso tra tutti i thread
-	 * @param Dataset dataset condiviso thread**/
-	public static void setDataset(Dataset dataset) {
-		CalcolatoreCentroideThread.dataset = dataset;
+	 * Ottieni i centroidi come media delle features dei record di ogni cluster (dopo l'esecuzione)
+	 * @return centroidi dei cluster
+	 */
+	public double[][] getCentroidi()
+	{
+		int d = somme.length / k;
+		double[][] centroidi = new double[k][d];
+		for(int j=0; j<k; j++)
+			for(int f=0; f<d; f++)
+				centroidi[j][f] = somme[j * d + f] / conteggi[j];
+		return centroidi;
 	}
 
+	/**
+	 * Ottieni il numero di record di ogni cluster (dopo l'esecuzione)
+	 * @return conteggi per cluster
+	 */
+	public int[] getConteggi()
+	{
+		return conteggi;
+	}
 }
@@ -17,7 +17,7 @@ public class Cluster implements Cloneable
 	/** Cluster ha un identificativo **/
 	int idCluster;
 	/** Centroide rappresentativo (in coordinate xi,yi...nfeaturei)**/
-    ArrayList<Double> centroide; 
+    double[] centroide; 
     /** Indici dei record inseriti**/
 	ArrayList<Integer> indiciInseriti; 
 	/**
@@ -26,7 +26,7 @@ public class Cluster implements Cloneable
 	 */
     public Cluster(int idCluster)
     {
-    	centroide = new ArrayList<Double>();
+    	centroide = new double[0];
     	indiciInseriti = new ArrayList<Integer>();
     	this.idCluster = idCluster;
     }
@@ -34,7 +34,7 @@ public class Cluster implements Cloneable
      * Setta il centroide
 	 * @param centroide centroide
 	 */    
-    public void setCentroide(ArrayList<Double> centroide)
+    public void setCentroide(double[] centroide)
     {
     	this.centroide = centroide;
     }
@@ -53,13 +53,13 @@ public class Cluster implements Cloneable
 	 */
     public void clearCluster()
     {
-    	centroide.clear();
+    	centroide = new double[0];
     }
     /**
      * Ottieni il centroide
 	 * @return centroide
 	 */
-    public ArrayList<Double> getCentroide()
+    public double[] getCentroide()
     {
     	return centroide;
     }
@@ -80,32 +80,19 @@ public class Cluster implements Cloneable
 	 */ 
 	public double calcolaDistanzaCentroide(Cluster cluster) 
 	{
-		double sum=0;
-		int i;
-		double x1,x2;
-		
-		/* Per il numero di elementi composti dal centroide (x, y...)*/
-		for(i=0; i<this.centroide.size(); i++)
-		{	
-			// Eccettua la differenza tra le componenti tra i due centroidi
-			x1 = cluster.centroide.get(i);
-			x2 = this.centroide.get(i);
-			sum+= Math.pow(x1-x2, 2); //Quadrato dei punti in una sommatoria
-		}
-		/* Ritorna la distanza euclidea*/
-		return Math.sqrt(sum);
+		/* Distanza euclidea tra le componenti (x, y...) dei due centroidi */
+		return KernelDistanza.distanza(this.centroide, cluster.centroide);
 	}
 	
     /**
      * CLona il cluster in un determinato stato
 	 * @return cloned Cluster clonato
 	 */
-	@SuppressWarnings("unchecked")
 	@Override
 	public Object clone()
 	{
 		Cluster cloned = new Cluster(this.idCluster);
-		cloned.centroide = (ArrayList<Double>) this.centroide.clone();
+		cloned.centroide = this.centroide.clone();
 		return cloned;
 		
 	}
@@ -121,8 +108,8 @@ public class Cluster implements Cloneable
 	 */
 	public void stampaCentroide() 
 	{
-		for(int i=0; i< this.centroide.size(); i++)
-			System.out.println(this.centroide.get(i));
+		for(int i=0; i< this.centroide.length; i++)
+			System.out.println(this.centroide[i]);
 		// TODO Auto-generated method stub
 	}
 	
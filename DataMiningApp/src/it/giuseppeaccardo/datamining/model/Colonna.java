@@ -0,0 +1,34 @@
+package it.giuseppeaccardo.datamining.model;
+
+/**
+ * <h1>Colonna!</h1>
+ * Interfaccia che rappresenta una singola colonna (feature) del dataset memorizzata in forma primitiva. Il dataset è
+ * organizzato per colonne (layout "colonnare") in modo tale che tutti i valori di una stessa feature siano contigui in memoria,
+ * evitando di incapsulare ogni cella in un oggetto Double.
+ * <br><br>
+ * Tale interfaccia permette di separare il "come" i valori sono memorizzati (heap, file mappato...) dal dataset che li utilizza.
+ * @author Giuseppe Accardo
+ * @version 1.0
+ * @since   14-02-2017
+ * @see Dataset
+ * @see ColonnaArray
+ */
+public interface Colonna
+{
+	/**
+	 * Ottieni il valore di una cella della colonna
+	 * @param i indice del record
+	 * @return valore della cella
+	 */
+	public double get(int i);
+	/**
+	 * Ottieni il numero di valori contenuti nella colonna
+	 * @return numero dei record
+	 */
+	public int size();
+	/**
+	 * Aggiunge un valore in coda alla colonna
+	 * @param valore valore da aggiungere
+	 */
+	public void add(double valore);
+}
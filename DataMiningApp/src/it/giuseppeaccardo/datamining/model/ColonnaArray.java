@@ -0,0 +1,119 @@
+package it.giuseppeaccardo.datamining.model;
+
+import java.util.Arrays;
+
+/**
+ * <h1>Colonna Array!</h1>
+ * Implementazione di una colonna su un array contiguo di double primitivi. La colonna si comporta come un "builder"
+ * durante il caricamento: l'array cresce automaticamente (del 50% come un ArrayList) man mano che si aggiungono i valori,
+ * e alla fine del caricamento può essere compattato per liberare lo spazio in eccesso.
+ * <br><br>
+ * Rispetto ad un ArrayList&lt;Double&gt;, ogni cella occupa 8 byte invece di un riferimento e di un oggetto Double, e la
+ * lettura non richiede nessun unboxing.
+ * @author Giuseppe Accardo
+ * @version 1.0
+ * @since   14-02-2017
+ * @see Colonna
+ * @see Dataset
+ */
+public class ColonnaArray implements Colonna
+{
+	/** Capacita' iniziale della colonna **/
+	private static final int CAPACITA_INIZIALE = 16;
+	/** Valori della colonna (solo i primi 'size' sono validi) **/
+	private double[] valori;
+	/** Numero di valori inseriti **/
+	private int size;
+
+	/**
+	 * Costruttore che crea una colonna vuota con una capacita' iniziale di default
+	 */
+	public ColonnaArray()
+	{
+		this(CAPACITA_INIZIALE);
+	}
+	/**
+	 * Costruttore che crea una colonna vuota con la capacita' iniziale indicata
+	 * @param capacita numero di valori che la colonna puo' contenere senza crescere
+	 */
+	public ColonnaArray(int capacita)
+	{
+		valori = new double[Math.max(capacita, 1)];
+		size = 0;
+	}
+
+	@Override
+	public double get(int i)
+	{
+		if(i >= size)
+			throw new IndexOutOfBoundsException("Indice: " + i + ", Record: " + size);
+		return valori[i];
+	}
+
+	@Override
+	public int size()
+	{
+		return size;
+	}
+
+	@Override
+	public void add(double valore)
+	{
+		if(size == valori.length)
+			cresci(size + 1);
+		valori[size++] = valore;
+	}
+
+	/**
+	 * Accoda tutti i valori di un'altra colonna array
+	 * @param altra colonna da accodare
+	 */
+	public void addAll(ColonnaArray altra)
+	{
+		if(size + altra.size > valori.length)
+			cresci(size + altra.size);
+		System.arraycopy(altra.valori, 0, valori, size, altra.size);
+		size += altra.size;
+	}
+
+	/**
+	 * Assicura che la colonna possa contenere almeno 'capacita' valori senza dover crescere
+	 * @param capacita capacita' minima
+	 */
+	public void assicuraCapacita(int capacita)
+	{
+		if(capacita > valori.length)
+			valori = Arrays.copyOf(valori, capacita);
+	}
+
+	/**
+	 * Riduce la capacita' dell'array al numero di valori effettivamente inseriti. Utile a fine caricamento.
+	 */
+	public void compatta()
+	{
+		if(valori.length != size)
+			valori = Arrays.copyOf(valori, Math.max(size, 1));
+	}
+
+	/**
+	 * Ottieni l'array dei valori. Da notare che l'array potrebbe essere piu lungo del numero di valori validi (size)
+	 * e che non è una copia, quindi non deve essere modificato.
+	 * @return valori array contiguo della colonna
+	 */
+	public double[] valori()
+	{
+		return valori;
+	}
+
+	/**
+	 * Aumenta la capacita' dell'array (del 50%) in modo da contenere almeno 'minimo' valori
+	 * @param minimo capacita' minima richiesta
+	 */
+	private void cresci(int minimo)
+	{
+		int capacita = valori.length + (valori.length >> 1);
+		if(capacita < minimo)
+			capacita = minimo;
+		valori = Arrays.copyOf(valori, capacita);
+	}
+}
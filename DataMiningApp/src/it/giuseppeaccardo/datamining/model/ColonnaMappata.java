@@ -0,0 +1,98 @@
+package it.giuseppeaccardo.datamining.model;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * <h1>Colonna Mappata!</h1>
+ * Implementazione di una colonna in sola lettura i cui valori risiedono in un file mappato in memoria (memory-mapped file)
+ * e non nell'heap della JVM. Il sistema operativo carica le pagine del file solo quando vengono lette, quindi è possibile
+ * lavorare su colonne piu grandi della memoria concessa alla JVM (-Xmx) e il Garbage Collector non deve scandire i valori.
+ * <br><br>
+ * Il file contiene i double in formato little-endian uno dopo l'altro. Poichè un singolo MappedByteBuffer non puo' superare
+ * i 2 GB, il file viene mappato a segmenti di dimensione fissa.
+ * @author Giuseppe Accardo
+ * @version 1.0
+ * @since   14-02-2017
+ * @see Colonna
+ * @see DatasetMappato
+ */
+public class ColonnaMappata implements Colonna
+{
+	/** Numero di double per segmento espresso come potenza di 2 (2^27 double = 1 GB) **/
+	private static final int BIT_SEGMENTO = 27;
+	/** Maschera per ricavare la posizione all'interno del segmento **/
+	private static final int MASCHERA_SEGMENTO = (1 << BIT_SEGMENTO) - 1;
+	/** Segmenti mappati del file visti come buffer di double **/
+	private final DoubleBuffer[] segmenti;
+	/** Numero di valori della colonna **/
+	private final int size;
+
+	/**
+	 * Costruttore che mappa una porzione di un file aperto
+	 * @param canale canale del file da mappare
+	 * @param offset posizione (in byte) del primo valore nel file
+	 * @param size numero di valori della colonna
+	 * @throws IOException errore durante la mappatura del file
+	 */
+	public ColonnaMappata(FileChannel canale, long offset, int size) throws IOException
+	{
+		this.size = size;
+		int numSegmenti = (int) (((long) size + MASCHERA_SEGMENTO) >>> BIT_SEGMENTO);
+		segmenti = new DoubleBuffer[numSegmenti];
+		for(int s=0; s<numSegmenti; s++)
+		{
+			long inizio = (long) s << BIT_SEGMENTO;
+			long valori = Math.min((long) size - inizio, 1L << BIT_SEGMENTO);
+			segmenti[s] = canale.map(FileChannel.MapMode.READ_ONLY, offset + inizio * Double.BYTES, valori * Double.BYTES)
+								.order(ByteOrder.LITTLE_ENDIAN)
+								.asDoubleBuffer();
+		}
+	}
+
+	/**
+	 * Apre un file contenente solo i valori di una colonna e lo mappa interamente
+	 * @param file file della colonna
+	 * @return colonna mappata
+	 * @throws IOException errore durante l'apertura o la mappatura del file
+	 */
+	public static ColonnaMappata apri(File file) throws IOException
+	{
+		try(RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel canale = raf.getChannel())
+		{
+			long valori = canale.size() / Double.BYTES;
+			if(valori > Integer.MAX_VALUE)
+				throw new IOException("Colonna troppo grande: " + file.getPath());
+			/* La mappatura resta valida anche dopo la chiusura del canale */
+			return new ColonnaMappata(canale, 0, (int) valori);
+		}
+	}
+
+	@Override
+	public double get(int i)
+	{
+		if(i >= size)
+			throw new IndexOutOfBoundsException("Indice: " + i + ", Record: " + size);
+		return segmenti[i >>> BIT_SEGMENTO].get(i & MASCHERA_SEGMENTO);
+	}
+
+	@Override
+	public int size()
+	{
+		return size;
+	}
+
+	/**
+	 * Una colonna mappata è in sola lettura
+	 * @throws UnsupportedOperationException sempre
+	 */
+	@Override
+	public void add(double valore)
+	{
+		throw new UnsupportedOperationException("Colonna mappata in sola lettura");
+	}
+}
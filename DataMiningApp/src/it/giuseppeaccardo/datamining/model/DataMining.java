@@ -1,6 +1,6 @@
 package it.giuseppeaccardo.datamining.model;
 import java.util.ArrayList;
-import it.giuseppeaccardo.datamining.model.ricordo.*;
+import java.util.Random;
 import it.giuseppeaccardo.datamining.exception.FeatureInsufficientiException;
 
 /**
@@ -21,7 +21,6 @@ import it.giuseppeaccardo.datamining.exception.FeatureInsufficientiException;
  * @since   14-02-2017
  * @see Dataset
  * @see Cluster
- * @see Memento
  */
 public class DataMining 
 {
@@ -29,6 +28,12 @@ public class DataMining
 	private Dataset dataset;
 	/** Piu Cluster contenente i relativi punti **/
 	Cluster clusters[];
+	/** Indice del cluster assegnato ad ogni record nell'ultima assegnazione **/
+	private int[] etichette;
+	/** Statistiche dei cluster calcolate dall'ultimo K-Means (null se non disponibili) **/
+	private StatisticheCluster statistiche;
+	/** Albero kd sul dataset selezionato, costruito al primo K-Means che lo usa **/
+	private IndiceKdTree indiceKdTree;
 	
 	/** 
 	 * Ottieni le features usate
@@ -47,6 +52,22 @@ public class DataMining
 	public Cluster[] getClusters()
 	{return clusters;}
 	
+	/** 
+	 * Ottieni l'indice del cluster assegnato ad ogni record (null se il k-means non è stato eseguito)
+	 * @return etichette dei record
+	*/
+	public int[] getEtichette()
+	{return etichette;}
+	
+	/** 
+	 * Ottieni le statistiche dei cluster (dimensione, SSE, raggio e varianze per cluster; inerzia, Davies-Bouldin e
+	 * Calinski-Harabasz), calcolate nell'assegnazione finale dell'ultimo K-Means classico o mini-batch
+	 * @return statistiche dei cluster, null se l'ultimo K-Means non le ha calcolate
+	 * @see StatisticheCluster
+	*/
+	public StatisticheCluster getStatistiche()
+	{return statistiche;}
+	
 	/** 
 	 * Ottieni dataset selezionato
 	 * @return Dataset dataset selezionato
@@ -62,16 +83,18 @@ public class DataMining
 	public void setDatasetSelected(Dataset dataset)
 	{
 		this.dataset = dataset;
+		this.indiceKdTree = null;
 	}
 	/**
-	 *  Tale metodo si occupa di clonare e di selezionare solo le feature richieste nel dataset.
-	 *  Dopo che sarà stato selezionato il dataset, diventerà il dataset che apparterrà al datamining corrente. La clonazione
-	 *  è necessaria, altrimenti le modifiche del dataset si ripercuoterebbero verso il dataset di partenza. 
-	 *  Questo perchè datamining come costruttore accetta il reference al dataset. Infatti se volessimo effettuare piu
-	 *  datamining di diversi dataset selezionati da uno stesso dataset, dataset di partenza non dovrà essere immutato.
+	 *  Tale metodo si occupa di selezionare solo le feature richieste nel dataset.
+	 *  Dopo che sarà stato selezionato il dataset, diventerà il dataset che apparterrà al datamining corrente. La selezione
+	 *  è una vista che condivide le colonne del dataset di partenza: non si copia nessun valore, ma il dataset di partenza
+	 *  resta immutato. Infatti se volessimo effettuare piu datamining (anche contemporaneamente) di diversi dataset
+	 *  selezionati da uno stesso dataset, questo non dovrà essere né modificato né duplicato.
 	 *  @param featureSelezionate Feature da voler selezionare nel dataset
 	 *  @throws FeatureInsufficientiException
 	 *  @exception FeatureInsufficientiException Le feature da selezionare devono essere almeno 2.
+	 *  @see VistaDataset
 	 *  */
 	public void selezionaFeature(ArrayList<Integer> featureSelezionate) throws FeatureInsufficientiException
 	{	
@@ -81,32 +104,236 @@ public class DataMining
 		{   /* Caso in cui bloccare il flusso di istruzioni */
 			throw new FeatureInsufficientiException("Le features da selezionare devono essere almeno 2!", featureSelezionate.size());
 		}
-		/* Clona il DATASET di PARTENZA che dovrà essere 'immune' alla selezione */
-		Dataset datasetSel = (Dataset) dataset.clone();
-		/* Setta il nuovo dataset clonato e di questo effettua la selezione delle feature richieste */
-		this.setDatasetSelected(datasetSel);
-		this.getDatasetSelected().selezionaFeature(featureSelezionate);
-		//Stampa dataset selezionato su console
-		dataset.stampaDataset();	
+		/* Crea la vista sulle feature richieste: il DATASET di PARTENZA resta 'immune' alla selezione */
+		this.setDatasetSelected(dataset.vista(featureSelezionate));
 	}
 	/**
 	 *  Metodo che si occupa di effettuare il K-means,  un algoritmo di clustering partizionale che permette di suddividere un 
 	 *  insieme di oggetti in K gruppi sulla base dei loro attributi.<br>
-	 *  L'algoritmo prevede diverse fasi: Assegnazione di centroidi random per ogni cluster e iterativamente assegnare ogni punto
+	 *  L'algoritmo prevede diverse fasi: Assegnazione di centroidi iniziali per ogni cluster e iterativamente assegnare ogni punto
 	 *  ad un suo corrispondente cluster, calcolato in base alla minima distanza media euclidica  rispetto ad ogni centroidi del cluster.
 	 *  A questo punto si ricalcolano dei nuovi centroidi per ogni cluster e se ne verifica la convergenza del risultato dell'algoritmo.
+	 *  I centroidi iniziali sono scelti con k-means++ (o k-means|| sui dataset grandi) con un seme casuale.
 	 *  @param k Gruppi o numero di Cluster su cui voglia effettuare l'algoritmo
 	 *  @throws ArithmeticException eccezione lanciata nel caso in cui l'algoritmo non converga
 	 *  */
 	public void Kmeans(int k) throws ArithmeticException
+	{
+		Kmeans(k, new Random().nextLong());
+	}
+	/**
+	 *  K-means con i centroidi iniziali scelti a partire da un seme: lo stesso seme produce gli stessi cluster.
+	 *  @param k Gruppi o numero di Cluster su cui voglia effettuare l'algoritmo
+	 *  @param seme seme della scelta dei centroidi iniziali
+	 *  @throws ArithmeticException eccezione lanciata nel caso in cui l'algoritmo non converga
+	 *  */
+	public void Kmeans(int k, long seme) throws ArithmeticException
 	{
 		//Crea k gruppi di cluster
 		clusters = new Cluster[k];
    		//Assegna K centroidi (xi,yi...ni) rappresentativi dei loro corrispondenti cluster
-	 	assegnaCentroidiClusterRandom(k);
+	 	assegnaCentroidiIniziali(k, seme);
 	 	// Processo di assegnazione iterativo
 	 	calcolaKmeans(k);
 	}
+	/**
+	 *  K-means con i centroidi iniziali scelti a partire da un seme e con criteri di arresto configurabili, per avere
+	 *  una durata limitata e prevedibile.
+	 *  @param k Gruppi o numero di Cluster su cui voglia effettuare l'algoritmo
+	 *  @param seme seme della scelta dei centroidi iniziali
+	 *  @param opzioni criteri di arresto
+	 *  @return esito dell'esecuzione, con il criterio che l'ha fermata
+	 *  @throws ArithmeticException eccezione lanciata nel caso in cui l'algoritmo non converga
+	 *  @see OpzioniKmeans
+	 *  */
+	public RisultatoKmeans Kmeans(int k, long seme, OpzioniKmeans opzioni) throws ArithmeticException
+	{
+		clusters = new Cluster[k];
+	 	assegnaCentroidiIniziali(k, seme);
+	 	return calcolaKmeans(k, opzioni);
+	}
+	/**
+	 *  K-Means ripetuto con nInit avvii indipendenti, eseguiti contemporaneamente sullo stesso dataset, ognuno con i
+	 *  centroidi iniziali scelti da un seme diverso: si conservano i cluster dell'avvio con l'inerzia minore, per ridurre
+	 *  il rischio di un minimo locale scadente.
+	 *  @param k Gruppi o numero di Cluster su cui voglia effettuare l'algoritmo
+	 *  @param nInit numero di avvii
+	 *  @param seme seme da cui sono derivati i semi degli avvii
+	 *  @param opzioni criteri di arresto di ogni avvio
+	 *  @return esito dell'avvio migliore
+	 *  @throws ArithmeticException eccezione lanciata nel caso in cui nessun avvio converga
+	 *  @see KmeansMultiAvvio
+	 *  */
+	public RisultatoKmeans KmeansMultiAvvio(int k, int nInit, long seme, OpzioniKmeans opzioni) throws ArithmeticException
+	{
+		KmeansMultiAvvio multiAvvio = new KmeansMultiAvvio(nInit, opzioni);
+		RisultatoKmeans risultato = multiAvvio.esegui(dataset, k, seme);
+		System.out.println(risultato);
+		impostaCentroidi(multiAvvio.getCentroidi());
+		etichette = multiAvvio.getEtichette();
+		statistiche = risultato.getStatistiche();
+		riempiIndici(k, risultato.getConteggi());
+		return risultato;
+	}
+	/**
+	 *  Esegue il K-Means per tutti i k di un intervallo, in parallelo, per scegliere il numero di cluster: per ogni k
+	 *  si ottengono inerzia e indice di Calinski-Harabasz, e il k consigliato dal gomito dell'inerzia. I cluster
+	 *  correnti non sono modificati: il k scelto va poi eseguito con Kmeans.
+	 *  @param kMin primo k
+	 *  @param kMax ultimo k
+	 *  @param seme seme da cui sono derivati i semi di ogni k
+	 *  @param opzioni criteri di arresto di ogni esecuzione
+	 *  @param avvioCaldo true per partire dai centroidi finali del k precedente
+	 *  @return scelta eseguita, con inerzie, indici e k consigliato
+	 *  @see SceltaK
+	 *  */
+	public SceltaK sceltaK(int kMin, int kMax, long seme, OpzioniKmeans opzioni, boolean avvioCaldo)
+	{
+		SceltaK scelta = new SceltaK(kMin, kMax, opzioni, avvioCaldo);
+		scelta.esegui(dataset, seme);
+		return scelta;
+	}
+	/**
+	 *  K-Means eseguito con una variante accelerata (es. KmeansElkan) al posto del K-Means classico: i centroidi iniziali
+	 *  sono scelti nello stesso modo e, a parità di centroidi iniziali, i cluster ottenuti sono gli stessi.
+	 *  @param k Gruppi o numero di Cluster su cui voglia effettuare l'algoritmo
+	 *  @param algoritmo variante del K-Means da utilizzare
+	 *  @throws ArithmeticException eccezione lanciata nel caso in cui l'algoritmo non converga
+	 *  @see AlgoritmoKmeans
+	 *  */
+	public void Kmeans(int k, AlgoritmoKmeans algoritmo) throws ArithmeticException
+	{
+		Kmeans(k, algoritmo, new Random().nextLong());
+	}
+	/**
+	 *  K-Means eseguito con una variante accelerata, con i centroidi iniziali scelti a partire da un seme.
+	 *  @param k Gruppi o numero di Cluster su cui voglia effettuare l'algoritmo
+	 *  @param algoritmo variante del K-Means da utilizzare
+	 *  @param seme seme della scelta dei centroidi iniziali
+	 *  @throws ArithmeticException eccezione lanciata nel caso in cui l'algoritmo non converga
+	 *  @see AlgoritmoKmeans
+	 *  */
+	public void Kmeans(int k, AlgoritmoKmeans algoritmo, long seme) throws ArithmeticException
+	{
+		clusters = new Cluster[k];
+	 	assegnaCentroidiIniziali(k, seme);
+	 	calcolaKmeans(k, algoritmo);
+	}
+	/**
+	 *  K-Means con l'algoritmo di filtraggio su albero kd: l'albero viene costruito una sola volta sul dataset selezionato
+	 *  e riutilizzato da tutte le esecuzioni successive, anche con k diversi, finchè la selezione non cambia.
+	 *  @param k Gruppi o numero di Cluster su cui voglia effettuare l'algoritmo
+	 *  @param seme seme della scelta dei centroidi iniziali
+	 *  @throws ArithmeticException eccezione lanciata nel caso in cui un cluster resti vuoto
+	 *  @see IndiceKdTree
+	 *  */
+	public void KmeansKdTree(int k, long seme) throws ArithmeticException
+	{
+		KmeansKdTree(k, seme, Integer.MAX_VALUE);
+	}
+	/**
+	 *  K-Means con l'algoritmo di filtraggio su albero kd e un numero massimo di iterazioni
+	 *  @param k Gruppi o numero di Cluster su cui voglia effettuare l'algoritmo
+	 *  @param seme seme della scelta dei centroidi iniziali
+	 *  @param maxIterazioni numero massimo di iterazioni (almeno 1)
+	 *  @throws ArithmeticException eccezione lanciata nel caso in cui un cluster resti vuoto
+	 *  @see IndiceKdTree
+	 *  */
+	public void KmeansKdTree(int k, long seme, int maxIterazioni) throws ArithmeticException
+	{
+		int numRecord = dataset.getNumRecord();
+		if(etichette == null || etichette.length != numRecord)
+			etichette = new int[numRecord];
+		assegnaCentroidiIniziali(k, seme);
+		double[][] centroidi = new double[k][];
+		for(int j=0; j<k; j++)
+			centroidi[j] = clusters[j].centroide;
+		
+		int[] conteggi = new int[k];
+		int iterazioni = getIndiceKdTree().kmeans(centroidi, etichette, conteggi, maxIterazioni);
+		System.out.println("Iterazioni: " + iterazioni);
+		statistiche = null;
+		riempiIndici(k, conteggi);
+	}
+	/**
+	 *  Ottieni l'albero kd del dataset selezionato, costruendolo se non esiste ancora
+	 *  @return albero kd
+	 *  */
+	public IndiceKdTree getIndiceKdTree()
+	{
+		if(indiceKdTree == null)
+			indiceKdTree = new IndiceKdTree(dataset);
+		return indiceKdTree;
+	}
+	/**
+	 *  K-Means mini-batch per dataset molto grandi: ad ogni passo un batch di record estratti a caso sposta i centroidi,
+	 *  e solo alla fine tutti i record sono assegnati ai cluster. I centroidi iniziali sono scelti con k-means++ su un
+	 *  campione di record, quindi l'intero algoritmo legge tutto il dataset una sola volta.
+	 *  @param k Gruppi o numero di Cluster su cui voglia effettuare l'algoritmo
+	 *  @param dimensioneBatch record estratti ad ogni passo
+	 *  @param iterazioni numero di passi (batch) da eseguire
+	 *  @param seme seme della scelta dei centroidi e dei batch
+	 *  @see KmeansMiniBatch
+	 *  */
+	public void KmeansMiniBatch(int k, int dimensioneBatch, int iterazioni, long seme)
+	{
+		int numRecord = dataset.getNumRecord();
+		if(etichette == null || etichette.length != numRecord)
+			etichette = new int[numRecord];
+		impostaCentroidi(InizializzazioneKmeans.kmeansPiuPiuCampione(dataset, k, 3 * dimensioneBatch, seme));
+		double[][] centroidi = new double[k][];
+		for(int j=0; j<k; j++)
+			centroidi[j] = clusters[j].centroide;
+		
+		KmeansMiniBatch miniBatch = new KmeansMiniBatch(dimensioneBatch, iterazioni, seme);
+		miniBatch.esegui(dataset, centroidi, etichette);
+		statistiche = miniBatch.getStatistiche();
+		riempiIndici(k, miniBatch.getConteggi());
+	}
+	/**
+	 *  Sceglie i centroidi iniziali con k-means++ o, sui dataset con molti record, con k-means|| che richiede solo
+	 *  pochi passaggi sui record.
+	 *  @param k Gruppi o numero di Cluster su cui voglia effettuare l'algoritmo
+	 *  @param seme seme della scelta
+	 *  */
+	private void assegnaCentroidiIniziali(int k, long seme)
+	{
+		impostaCentroidi(InizializzazioneKmeans.scegli(dataset, k, seme));
+	}
+	/**
+	 *  Assegna ai cluster K centroidi scelti con k-means++: ogni centroide è estratto con probabilità proporzionale al
+	 *  quadrato della distanza dai centroidi già scelti, quindi i centroidi sono distinti e ben distribuiti.
+	 *  @param k Gruppi o numero di Cluster su cui voglia effettuare l'algoritmo
+	 *  @param seme seme della scelta
+	 *  @see InizializzazioneKmeans
+	 *  */
+	public void assegnaCentroidiKmeansPiuPiu(int k, long seme)
+	{
+		impostaCentroidi(InizializzazioneKmeans.kmeansPiuPiu(dataset, k, seme));
+	}
+	/**
+	 *  Assegna ai cluster K centroidi scelti con k-means|| (k-means++ parallelo con sovracampionamento).
+	 *  @param k Gruppi o numero di Cluster su cui voglia effettuare l'algoritmo
+	 *  @param seme seme della scelta
+	 *  @see InizializzazioneKmeans
+	 *  */
+	public void assegnaCentroidiKmeansParallelo(int k, long seme)
+	{
+		impostaCentroidi(InizializzazioneKmeans.kmeansParallelo(dataset, k, seme));
+	}
+	/**
+	 *  Crea i cluster con i centroidi dati
+	 *  @param centroidi centroidi iniziali
+	 *  */
+	private void impostaCentroidi(double[][] centroidi)
+	{
+		clusters = new Cluster[centroidi.length];
+		for(int i=0; i<centroidi.length; i++)
+		{
+			clusters[i] = new Cluster(i);
+			clusters[i].setCentroide(centroidi[i]);
+		}
+	}
 	/**
 	 *  Tale metodo ha lo scopo di calcolare K Centroidi Random assegnati ai loro corrispondenti cluster.
 	 *  Da notare che la <b>convergenza</b> dipende proprio dalla scelta dei centroidi iniziali perchè l'algoritmo
@@ -123,7 +350,7 @@ public class DataMining
 		 	indiceRandom = ((int)(Math.random() * dataset.getNumRecord()));//
 		 	//Aggiungi il cluster e il suo centroide in indice
 		 	clusters[i] = new Cluster(i);
-		 	clusters[i].setCentroide( dataset.getRecord(indiceRandom));
+		 	clusters[i].setCentroide( dataset.getRecord(indiceRandom, new double[dataset.getFeatureUsate().size()]));
 	 	}
 	 	return;
 	}
@@ -133,147 +360,178 @@ public class DataMining
 	/**
 	 *  Fase o processo iterativo dell'algoritmo, in cui si assegnano i centroidi ai corrispondenti cluster utilizzando
 	 *  la MDM (minima distanza media) rispetto al centroide. Si ricalcoleranno i centroidi nuovi, sulla media dei nuovi punti
-	 *  inseriti, e infine si verifica la convergenza dell'algoritmo, cioè se i cluster posseggono sempre gli stessi punti. <br><br>
-	 *  Da notare l'utilizzo del pattern "Memento" per salvare lo stato precedente dei cluster per poterli confrontare successivamente
-	 *  con lo stato successivo.
+	 *  inseriti, e infine si verifica la convergenza dell'algoritmo, cioè se i cluster posseggono sempre gli stessi punti.
+	 *  Le statistiche dei cluster sono accumulate da ogni passaggio delle assegnazioni e sono conservate quelle
+	 *  dell'ultimo, senza un passaggio in piu sui record.
 	 *  @param k Gruppi o numero di Cluster su cui voglia effettuare l'algoritmo
 	 *  @throws ArithmeticException eccezione lanciata nel caso in cui l'algoritmo non converga
+	 *  @see KmeansLloyd
+	 *  @see StatisticheCluster
 	 *  */
 	public void calcolaKmeans(int k) throws ArithmeticException 
 	{
-		
-		//Crea il custode del memento
-		Caretaker caretaker = new Caretaker();
-		//Crea l'originatore stato   
-		Originator originator = new Originator();
-		
-		/* Variabili utilizzate per la convergenza */
-     	boolean finish = false;
-		int iteration = 0;
-		
-		/* Fin quando non converge, ripeti il procedimento*/
-		while(!finish) 
-		{
-			//Pulisci punti inseriti in quei cluster (se centroide e' invariato, i punti che inseriremo saranno lo stesso)		
-			for(int i=0; i<k; i++)
-				clusters[i].indiciInseriti.clear();
-			
-			//Origina stato e custodiscilo nel memento
-			originator.set(clusters);
-			caretaker.addMemento(originator.saveToMemento() );
-		
-			/*Assegna ai cluster i record piu' "vicini" attraverso la distanza euclidica (assegno sempre indici) rispetto ai centroidi*/
-			assignCluster(k);
-		    
-		    /* Calcola nuovi centroidi come la media dei valori contenuti nei cluster nuovi*/
-			calculateCentroids();
-		
-			//Incrementa passo
-			iteration++;				        	       	
-			System.out.println("Iterazione : " + iteration);
-			
-			//Aggiorna lo stato originator e restituisce lo stato precedente    
-			Cluster[] oldClusters = originator.restoreFromMemento( caretaker.getMemento());
-			/* verifica la convergenza confrontando i cambiamenti nei cluster */
-			if(staConvergendo(oldClusters, k) == 0)
-				finish=true;
-		}	
+		OpzioniKmeans opzioni = new OpzioniKmeans();
+		opzioni.setStatistiche(true);
+		calcolaKmeans(k, opzioni);
 	}
 	
 	/**
-	 *  verifica la convergenza calcolando la distanza tra i cluster calcolati precedentemente e i cluster attuali,
-	 *  cioè verifica se i cluster contengono gli stessi punti.
-	 *  @param oldClusters Stato dei cluster precedenti
+	 *  Processo iterativo del K-Means classico con criteri di arresto configurabili (tolleranza, miglioramento
+	 *  dell'inerzia, iterazioni e tempo massimi), a partire dai centroidi correnti dei cluster. I centroidi dei cluster
+	 *  sono aggiornati sul posto e gli indici dei record sono inseriti nei cluster solo alla fine.
 	 *  @param k Gruppi o numero di Cluster su cui voglia effettuare l'algoritmo
-	 *  @return Distanza o "vicinanza" tra i due stati di clusters
+	 *  @param opzioni criteri di arresto
+	 *  @return esito dell'esecuzione, con il criterio che l'ha fermata
 	 *  @throws ArithmeticException eccezione lanciata nel caso in cui l'algoritmo non converga
+	 *  @see KmeansLloyd
+	 *  */
+	public RisultatoKmeans calcolaKmeans(int k, OpzioniKmeans opzioni) throws ArithmeticException 
+	{
+		int numRecord = dataset.getNumRecord();
+		if(etichette == null || etichette.length != numRecord)
+			etichette = new int[numRecord];
+		/* I centroidi dei cluster sono aggiornati sul posto */
+		double[][] centroidi = new double[k][];
+		for(int j=0; j<k; j++)
+			centroidi[j] = clusters[j].centroide;
+		
+		RisultatoKmeans risultato = new KmeansLloyd(opzioni).esegui(dataset, centroidi, etichette);
+		System.out.println(risultato);
+		/* Inserisci nei cluster gli indici dei record dell'ultima assegnazione */
+		statistiche = risultato.getStatistiche();
+		riempiIndici(k, risultato.getConteggi());
+		return risultato;
+	}
+	
+	/**
+	 *  Processo iterativo del K-Means delegato ad una variante accelerata, a partire dai centroidi correnti dei cluster.
+	 *  Al termine i cluster ricevono i centroidi finali e gli indici dei record assegnati.
+	 *  @param k Gruppi o numero di Cluster su cui voglia effettuare l'algoritmo
+	 *  @param algoritmo variante del K-Means da utilizzare
+	 *  @throws ArithmeticException eccezione lanciata nel caso in cui un cluster resti vuoto
 	 *  */
-	private double staConvergendo(Cluster[] oldClusters, int k) throws ArithmeticException
+	public void calcolaKmeans(int k, AlgoritmoKmeans algoritmo) throws ArithmeticException
 	{
-		int i=0;
-		double dist=0;
-		/* Distanza tra i punti dei corrispondenti cluster */
-		for(i=0; i<k; i++)
-			dist+=clusters[i].calcolaDistanzaCentroide(oldClusters[i]);
-		/* Se dist presenta un valore indefinibile, significa che l'algoritmo sta divergendo  e lancia l'eccezione*/
-		if (Double.isInfinite(dist) || Double.isNaN(dist))
-	        throw new ArithmeticException("Distanza tra cluster: " + dist);
+		int numRecord = dataset.getNumRecord();
+		if(etichette == null || etichette.length != numRecord)
+			etichette = new int[numRecord];
+		double[][] centroidi = new double[k][];
+		for(int j=0; j<k; j++)
+			centroidi[j] = clusters[j].centroide.clone();
+		
+		algoritmo.esegui(dataset, centroidi, etichette);
+		System.out.println("Iterazioni: " + algoritmo.getIterazioni() + ", distanze evitate: " 
+						   + algoritmo.getDistanzeEvitate() + " su " + (algoritmo.getDistanzeEvitate() + algoritmo.getDistanzeCalcolate()));
 		
-		return dist;
+		for(int j=0; j<k; j++)
+			clusters[j].setCentroide(centroidi[j]);
+		statistiche = null;
+		riempiIndici(k, algoritmo.getConteggi());
 	}
 	
 	/**
 	 *  Calcola i nuovi valori dei centroidi per ogni cluster effettuando la media aritmetica sul numero di valori
 	 *  contenuti. Questo metodo utilizza una programmazione MultiThreading poichè è la parte piu onerosa a livello 
-	 *  computazionale. <br>Ogni thread si occupera' di calcolare il centroide del suo corrispondente cluster,
-	 *  in modo tale da sfruttare la concorrenza e ridurre il tempo di lavoro effettivo.
+	 *  computazionale. <br>I record sono divisi in intervalli elaborati dal pool Fork/Join persistente (nessun thread 
+	 *  viene creato ad ogni chiamata): ogni intervallo accumula somme e conteggi di tutti i cluster, quindi il parallelismo
+	 *  dipende dal numero di core e non dal numero di cluster.
 	 *  @see CalcolatoreCentroideThread
-	 *  @exception InterruptedException thread interrotto improvvisamente o non si riesce a stopparlo
+	 *  @see PoolCalcolo
 	 *  */
 	public void calculateCentroids()
 	{		   
-		// Setto la variabile condivisa in lettura tra i thread
-		CalcolatoreCentroideThread.setDataset(dataset); 
-		// Crea una lista di Threads
-		ArrayList<Thread> threads = new ArrayList<Thread>();
-		
-		//Per ogni cluster
-    	for(Cluster cluster : clusters) 
-    	{
-    		/* Un thread calcolerà il centroide del cluster assegnato.
-    		 * Si crea un 'Runnable' che definisce l'operazione da far effetture al thread. 
-    		 * In questo caso si associa all'algoritmo Run() il calcolo del centroide passando come costruttore di 
-    		 * CalcolatoreCentroideThread il cluster su cui opererà quel thread.
-    		 * */
-    		// Crea Operazione da far eseguire, definendone il cluster su cui operare
-			Runnable  calcolaCentroide = new CalcolatoreCentroideThread(cluster);
-			// Crea thread che effettuera quell'operazione, definita in Run, che sarà fatta eseguire da t.start()
-			Thread t = new Thread(calcolaCentroide);
-			t.start();
-			threads.add(t);
-    	}
-    	
-    	/* Il Thread Principale si metterà in attesa di raccogliere i singoli thread lanciati che hanno terminato
-    	 * le loro operazioni*/
-		for (Thread thread : threads) {
-		    try {
-		        thread.join();
-		    } catch (InterruptedException e) {
-		        e.printStackTrace();
-		    }
+		/* Le etichette sono allineate agli indici dei cluster dopo ogni assegnazione; se mancano (cluster riempiti
+		 * dall'esterno) si ricavano dagli indici inseriti */
+		if(etichette == null || etichette.length != dataset.getNumRecord())
+		{
+			etichette = new int[dataset.getNumRecord()];
+			for(int j=0; j<clusters.length; j++)
+				for(int indice : clusters[j].getIndiciInseriti())
+					etichette[indice] = j;
 		}
-		
+		double[][] centroidi = CalcolatoreCentroideThread.calcola(dataset, etichette, clusters.length);
+		//Per ogni cluster, setta il centroide calcolato
+		for(int j=0; j<clusters.length; j++)
+			clusters[j].setCentroide(centroidi[j]);
 	}
 
 	/**
 	 * 	Assegna i punti, localizzati come indici all'interno della tabella del dataset, ai suoi corrispondenti cluster,
-	 *  valutando l'MDM, ossia la distanza media minima rispetto ai centroidi.
+	 *  valutando l'MDM, ossia la distanza media minima rispetto ai centroidi.<br>
+	 *  L'assegnazione è la parte piu onerosa dell'algoritmo (O(n·k) distanze), quindi i record sono divisi in intervalli
+	 *  elaborati in parallelo dal pool Fork/Join: ogni intervallo scrive le sue etichette e conta i propri record, e solo
+	 *  alla fine gli indici sono inseriti nei cluster, nell'ordine dei record.
   	 *  @param k Gruppi o numero di Cluster su cui voglia effettuare l'algoritmo
 	 *  @see Dataset
+	 *  @see TaskAssegnazione
 	 *  */
 	public void assignCluster(int k)
 	{
-		/* Indice del cluster "piu vicino" a quel record */
-		int clusterMin;
-		/* Variabili utili per il calcolo del minimo*/
-		double dist, min;
+		/* Assegna in parallelo i record ai cluster "piu vicini" */
+		TaskAssegnazione assegnazione = assegna(k);
+		// Inserisci l'indice-i del corrispondente elemento nel suo cluster
+		statistiche = null;
+		riempiIndici(k, assegnazione.getConteggi());
+	}
+	
+	/**
+	 * 	Esegue l'assegnazione parallela dei record ai centroidi correnti scrivendo le etichette.
+  	 *  @param k Gruppi o numero di Cluster su cui voglia effettuare l'algoritmo
+  	 *  @return assegnazione eseguita, con i conteggi per cluster
+	 *  */
+	private TaskAssegnazione assegna(int k)
+	{
+		int numRecord = dataset.getNumRecord();
+		if(etichette == null || etichette.length != numRecord)
+			etichette = new int[numRecord];
+		double[][] centroidi = new double[k][];
+		for(int j=0; j<k; j++)
+			centroidi[j] = clusters[j].centroide;
 		
-		// Record da assegnare
-		for(int i = 0; i< dataset.getNumRecord(); i++)
+		TaskAssegnazione assegnazione = new TaskAssegnazione(dataset, centroidi, etichette, 0, numRecord,
+															 TaskAssegnazione.soglia(numRecord), false);
+		PoolCalcolo.get().invoke(assegnazione);
+		return assegnazione;
+	}
+	
+	/**
+	 * 	Inserisce nei cluster gli indici dei record secondo le etichette dell'ultima assegnazione, nell'ordine dei record.
+  	 *  @param k Gruppi o numero di Cluster su cui voglia effettuare l'algoritmo
+  	 *  @param conteggi numero di record per cluster, usato per dimensionare le liste
+	 *  */
+	private void riempiIndici(int k, int[] conteggi)
+	{
+		for(int j=0; j<k; j++)
 		{
-			/* Cerco cluster con distanza minima */
-		    min = dataset.Distanza(i, clusters[0].centroide); // Distanza tra il record e il centroide
-			clusterMin = 0;
-			
-			for(int j=1; j<k; j++)
-			{// Distanza tra il record-i e il centroide (calcolato run time)
-				dist = dataset.Distanza(i, clusters[j].centroide); 
-				if(dist<min)
-					clusterMin = j;
-			}
-			// Inserisci l'indice-i del corrispondente elemento in quel cluster Min.
-			clusters[clusterMin].addIndiciInseriti(i);
-		}		
+			clusters[j].indiciInseriti.clear();
+			clusters[j].indiciInseriti.ensureCapacity(conteggi[j]);
+		}
+		for(int i=0; i<etichette.length; i++)
+			clusters[etichette[i]].addIndiciInseriti(i);
+	}
+	
+	/**
+	 * 	Calcola la silhouette esatta dei cluster correnti, confrontando tutte le coppie di record (O(n²), per i
+	 *  dataset piccoli).
+	 *  @return silhouette media e per cluster
+	 *  @see Silhouette
+	 *  */
+	public Silhouette silhouetteEsatta()
+	{
+		return Silhouette.esatta(dataset, clusters);
+	}
+	
+	/**
+	 * 	Stima la silhouette dei cluster correnti su un campione di record, con il margine di confidenza della stima
+	 *  (per i dataset con milioni di record).
+	 *  @param dimensioneCampione record da valutare e record di ogni cluster su cui stimare le distanze
+	 *  @param seme seme del campionamento
+	 *  @return silhouette stimata, media e per cluster
+	 *  @see Silhouette
+	 *  */
+	public Silhouette silhouetteCampionata(int dimensioneCampione, long seme)
+	{
+		return Silhouette.campionata(dataset, clusters, dimensioneCampione, seme);
 	}
 	
 	/**
@@ -290,7 +548,7 @@ public class DataMining
 		{
 			System.out.println(" APPLICA PCA per la RIDUZIONE della MATRICE");
 			double matriceRidotta[][];
-			matriceRidotta = PCAcolt.pcaReduxMatrix(dataset.toMatrix());
+			matriceRidotta = PCAcolt.pcaReduxMatrix(dataset);
 			for(Cluster cluster:clusters)
 			{
 				System.out.println("                         CLUSTER: "+cluster.getId());
@@ -1,4 +1,5 @@
 package it.giuseppeaccardo.datamining.model;
+import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 
@@ -32,8 +33,8 @@ public abstract class Dataset  implements Cloneable
 	private String[] features;
 	/** Nome dataset **/
 	private String nomeDataset;
-	/** Matrice contenente il dataset di valori **/
-	protected ArrayList<ArrayList<Double>> mat; 	
+	/** Matrice contenente il dataset di valori, memorizzata per colonne primitive (una colonna per feature) **/
+	protected ArrayList<Colonna> mat; 	
  	
     /**
     * Classe astratta che ogni dataset è obblicato ad implementare poichè ogni dataset presenta un suo
@@ -72,7 +73,7 @@ public abstract class Dataset  implements Cloneable
 			/* Crea un clone del dataset. Da notare che si necessita di effettuare anche un clone di mat che è una collection e 
 			 * ciò lo renderà "Deep", necessario per la seleziona delle features senza modificare il dataset iniziale  */
 			Dataset datasetClone = ((Dataset) super.clone());
-			datasetClone.setTabella( ((ArrayList<ArrayList<Double>>) datasetClone.getTabella().clone()) );
+			datasetClone.setTabella( ((ArrayList<Colonna>) datasetClone.getTabella().clone()) );
 			return datasetClone;
 		}
 		catch(CloneNotSupportedException e) {
@@ -87,12 +88,12 @@ public abstract class Dataset  implements Cloneable
     */	
 	public void inizializzaTabella()
 	{
-	   mat = new ArrayList<ArrayList<Double>>();
+	   mat = new ArrayList<Colonna>();
 	   featureUsate = new ArrayList<Integer>();
 	   
 	   for(int i=0; i< this.getFeatures().length; i++)
 	   {
-		   mat.add(new ArrayList<Double>());
+		   mat.add(new ColonnaArray());
 		   featureUsate.add(i); // uso tutte le feature
 	   }
 	}
@@ -107,7 +108,7 @@ public abstract class Dataset  implements Cloneable
 		/* Crea una matrice temporanea utilizzata per selezionare le features. Mat
 		 * dovrà essere vuota perchè le colonne saranno inserite a partire da tmpMat che sara
 		 * deallocato dal Garbage della JVM*/
-		ArrayList<ArrayList<Double>> tmpMat = new ArrayList<ArrayList<Double>>(mat);
+		ArrayList<Colonna> tmpMat = new ArrayList<Colonna>(mat);
 		mat.clear();
 		this.featureUsate = featureSelezionate;
 		/* Inserisci le colonne a mat */
@@ -115,6 +116,124 @@ public abstract class Dataset  implements Cloneable
 			setColonna( tmpMat.get( featureSelezionate.get(i)));
 	}
 	
+	/**
+	 * Carica un file delimitato da ',' (un record per riga) nelle colonne del dataset. Le sottoclassi possono utilizzarlo
+	 * all'interno della loro implementazione di CaricaDataset. In modalita' parallela il file è diviso in porzioni allineate
+	 * alle righe, lette contemporaneamente da piu core e accodate nell'ordine originale.
+	 * @param path nome del file
+	 * @param parallelo true per dividere la lettura tra piu core (i file piccoli sono comunque letti da un solo thread)
+	 * @return numero di record letti
+	 * @throws IOException errore durante la lettura (FileNotFoundException se il file non esiste)
+	 * @throws NumberFormatException cella non numerica o record incompleto
+	 * @see LettoreCSV
+	 */
+	protected int caricaFileDelimitato(String path, boolean parallelo) throws IOException
+	{
+		Colonna[] colonne = mat.toArray(new Colonna[0]);
+		int record = parallelo ? LettoreCSV.caricaParallelo(path, colonne) : LettoreCSV.carica(path, colonne);
+		compattaTabella();
+		return record;
+	}
+
+	/**
+	 * Salva le colonne usate dal dataset in uno snapshot binario, in modo da poterlo riaprire senza ripetere il parsing.
+	 * @param path nome del file di snapshot
+	 * @throws IOException errore durante la scrittura
+	 * @see SnapshotDataset
+	 */
+	public void salvaSnapshot(String path) throws IOException
+	{
+		SnapshotDataset.salva(this, new File(path));
+	}
+
+	/**
+	 * Salva le colonne usate dal dataset in uno snapshot binario ricavato da un file sorgente, di cui sono registrate
+	 * dimensione e data di modifica (rilevate prima del parsing) per riconoscere in seguito uno snapshot non aggiornato.
+	 * @param path nome del file di snapshot
+	 * @param dimensioneSorgente dimensione in byte del file sorgente
+	 * @param modificaSorgente data di modifica del file sorgente
+	 * @throws IOException errore durante la scrittura
+	 * @see SnapshotDataset
+	 */
+	protected void salvaSnapshot(String path, long dimensioneSorgente, long modificaSorgente) throws IOException
+	{
+		SnapshotDataset.salva(this, new File(path), dimensioneSorgente, modificaSorgente);
+	}
+
+	/**
+	 * Sostituisce le colonne del dataset con quelle di uno snapshot, mappate direttamente dal file senza copia.
+	 * Le sottoclassi possono utilizzarlo all'interno della loro implementazione di CaricaDataset.
+	 * @param path nome del file di snapshot
+	 * @param verifica true per verificare il checksum dello snapshot (legge tutto il file)
+	 * @throws IOException snapshot non valido o con colonne diverse da quelle del dataset
+	 * @see SnapshotDataset
+	 */
+	protected void caricaSnapshot(String path, boolean verifica) throws IOException
+	{
+		caricaSnapshot(path, verifica, null);
+	}
+
+	/**
+	 * Sostituisce le colonne del dataset con quelle di uno snapshot ricavato da un file sorgente, solo se dimensione e
+	 * data di modifica del file sorgente sono ancora quelle registrate nello snapshot.
+	 * @param path nome del file di snapshot
+	 * @param verifica true per verificare il checksum dello snapshot (legge tutto il file)
+	 * @param sorgente file sorgente da controllare (null per non controllarlo)
+	 * @throws IOException snapshot non valido, non aggiornato o con colonne diverse da quelle del dataset
+	 * @see SnapshotDataset
+	 */
+	protected void caricaSnapshot(String path, boolean verifica, File sorgente) throws IOException
+	{
+		String[] nomi = new String[featureUsate.size()];
+		for(int j=0; j<nomi.length; j++)
+			nomi[j] = features[featureUsate.get(j)];
+		Colonna[] colonne = SnapshotDataset.apri(new File(path), nomi, verifica, sorgente);
+		for(int j=0; j<colonne.length; j++)
+			mat.set(j, colonne[j]);
+	}
+
+	/**
+	 * Compatta le colonne del dataset liberando lo spazio allocato in eccesso durante il caricamento.
+	 * Le sottoclassi la invocano al termine di CaricaDataset.
+	 */
+	protected void compattaTabella()
+	{
+		for(Colonna colonna : mat)
+			if(colonna instanceof ColonnaArray)
+				((ColonnaArray) colonna).compatta();
+	}
+	
+	/**
+	 * Crea una vista sulle features selezionate che condivide le colonne di questo dataset, senza copiare i valori.
+	 * A differenza di clone() + selezionaFeature(), questo dataset non viene duplicato e resta immutato.
+	 * @param featureSelezionate posizioni delle colonne da includere nella vista
+	 * @return vista sulle features selezionate
+	 * @see VistaDataset
+	 */
+	public Dataset vista(ArrayList<Integer> featureSelezionate)
+	{
+		return new VistaDataset(this, featureSelezionate);
+	}
+
+	/**
+	 * Sostituisce la tabella con le colonne selezionate di un altro dataset (condivise, non copiate). Le features usate
+	 * sono riportate agli indici delle features originali del dataset di partenza.
+	 * @param sorgente dataset da cui condividere le colonne
+	 * @param featureSelezionate posizioni delle colonne del dataset sorgente
+	 */
+	void condividiColonne(Dataset sorgente, ArrayList<Integer> featureSelezionate)
+	{
+		ArrayList<Colonna> colonne = new ArrayList<Colonna>(featureSelezionate.size());
+		ArrayList<Integer> usate = new ArrayList<Integer>(featureSelezionate.size());
+		for(Integer posizione : featureSelezionate)
+		{
+			colonne.add(sorgente.mat.get(posizione));
+			usate.add(sorgente.featureUsate.get(posizione));
+		}
+		this.mat = colonne;
+		this.featureUsate = usate;
+	}
+
 	/** 
 	 * Stampa il dataset nella console**/
 	public void stampaDataset()
@@ -134,22 +253,37 @@ public abstract class Dataset  implements Cloneable
      * @param centroide punto centroide da cui calcolare la distanza
      * @return double Distanza euclidea tra un centroide e un record i 
      */
- 	public double Distanza(int i, ArrayList<Double> centroide)
+ 	public double Distanza(int i, double[] centroide)
  	{
- 		double Sum=0;
- 	     /* Da notare che essendo arraylist di arraylist, gli indici sono inversi ad una matrice.
+ 		return Math.sqrt(distanzaQuadrata(i, centroide));
+ 	}
+	/**
+     * Ottiene la distanza euclidea al quadrato tra un centroide e un record di indice i. È sufficiente per confrontare
+     * distanze (ad esempio per trovare il centroide piu vicino) senza calcolare la radice quadrata.
+     * @param i indice del record
+     * @param centroide punto centroide da cui calcolare la distanza
+     * @return double Distanza euclidea al quadrato tra un centroide e un record i
+     * @see KernelDistanza
+     */
+ 	public double distanzaQuadrata(int i, double[] centroide)
+ 	{
+ 		double sum=0;
+ 	     /* Da notare che essendo memorizzato per colonne, gli indici sono inversi ad una matrice.
  	      * Il primo get di mat indica la colonna e il secondo è il record. Inoltre, di un punto si necessitano
  	      * scorrere tutte le sue features (x,y...)*/
- 		for(int j=0; j<this.getFeatureUsate().size(); j++)
- 			Sum+=Math.pow((centroide.get(j) - mat.get(j).get(i)), 2);
- 		return Math.sqrt(Sum);
+ 		for(int j=0; j<mat.size(); j++)
+ 		{
+ 			double diff = centroide[j] - mat.get(j).get(i);
+ 			sum += diff * diff;
+ 		}
+ 		return sum;
  	}
 	/* Getter e Setter*/	
  	/**
      * Setta la tebella
      * @param tebella Tabella da settare
      */
-	private void setTabella(ArrayList<ArrayList<Double>> tabella) {
+	private void setTabella(ArrayList<Colonna> tabella) {
 		this.mat = tabella;
 	}
 	/**
@@ -183,7 +317,7 @@ public abstract class Dataset  implements Cloneable
      * @return numero dei record
      */	
 	public int getNumRecord() {
-		return this.getTabella().get(0).size();
+		return this.getTabella().isEmpty() ? 0 : this.getTabella().get(0).size();
 	}
 	
  	/**
@@ -210,12 +344,23 @@ public abstract class Dataset  implements Cloneable
 		
 		return record;
 	}
+	/** 
+	 * Copia un record in un array gia' allocato, senza creare oggetti. Utile nei cicli che visitano tutti i record.
+	 * @param indice indice del record da copiare
+	 * @param record array di destinazione (almeno lungo quanto le feature usate)
+	 * @return record l'array ricevuto, riempito con i valori del record**/
+	public double[] getRecord(int indice, double[] record)
+	{
+		for(int j=0; j<mat.size(); j++)
+			record[j] = mat.get(j).get(indice);
+		return record;
+	}
 	/** 
 	 * Setta la colonna del dataset. Tale sara utilizzata per inserire le colonne
 	 * da selezionare.
 	 * @param colonnaValori colonna da inserire
 	*/
-	public void setColonna( ArrayList<Double> colonnaValori)
+	public void setColonna(Colonna colonnaValori)
 	{
 		this.mat.add(colonnaValori);
 	}
@@ -223,7 +368,7 @@ public abstract class Dataset  implements Cloneable
 	 * Ottieni la tabella
 	 * @return tabella
 	*/
-	public ArrayList<ArrayList<Double>> getTabella()
+	public ArrayList<Colonna> getTabella()
 	{
 		return this.mat;
 	}
@@ -232,7 +377,7 @@ public abstract class Dataset  implements Cloneable
 	 * @param colonna colonna 
 	 * @param valore valore
 	*/
-	public void setElemento(int colonna, Double valore) 
+	public void setElemento(int colonna, double valore) 
 	{
 		mat.get(colonna).add(valore);
 	}
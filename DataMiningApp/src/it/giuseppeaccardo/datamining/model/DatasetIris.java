@@ -1,7 +1,6 @@
 package it.giuseppeaccardo.datamining.model;
-import java.io.BufferedReader;
+import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
 
 /**
@@ -38,58 +37,53 @@ public class DatasetIris extends Dataset
 		
 	/**
 	 *  Metodo astratto ereditato da Dataset ed reimplementato.
-	 *  Dataset Iris è un file .data che bisogna scorrere e caricare
+	 *  Dataset Iris è un file .data che bisogna scorrere e caricare. Il parsing avviene direttamente sui byte del file
+	 *  (LettoreCSV) e i valori sono scritti nelle colonne del dataset senza creare String intermedie; i file grandi sono
+	 *  divisi in porzioni lette in parallelo. Dopo il primo parsing il dataset è salvato in uno snapshot binario
+	 *  ("path.dms") che nei caricamenti successivi è semplicemente mappato, finchè il file .data non viene modificato
+	 *  (stessa dimensione e data di modifica registrate nello snapshot).
 	 *  @param path nome file da cui caricare iris
 	 *  @throws IOException
 	 *  @exception FileNotFoundException
 	 *  @exception IOException
+	 *  @exception NumberFormatException cella non numerica o record incompleto
+	 *  @see LettoreCSV
+	 *  @see SnapshotDataset
 	 *  */
 	// Throws specifica l'eccezzione che potrebbe lanciare (IOEception e le sue sottoclassi)
 	protected void CaricaDataset(String pathFile) throws IOException
 	{
-		BufferedReader bufferLetto = null;
-		String line = "";
-		String cvsSplitBy = ",";
-
-		try {
-			/* Carica file leggendo un stream di caratteri dal path indicato in input*/
-			bufferLetto = new BufferedReader(new FileReader(pathFile));
-			/* Effettua parsing del buffer delle righe apert */
-			while ((line = bufferLetto.readLine()) != null) 
-			{
-				if (line.length() > 0) 
-				{
-					/* Per ogni record letto, inseriscilo nella struttura dati con addRow*/
-					String[] cell = line.split(cvsSplitBy);
-					this.addRow(cell);
-				}
+		File sorgente = new File(pathFile);
+		File snapshot = new File(pathFile + SnapshotDataset.ESTENSIONE);
+		/* Se il file è già stato letto in precedenza, riapri lo snapshot binario invece di ripetere il parsing */
+		if(sorgente.isFile() && snapshot.isFile())
+		{
+			try {
+				caricaSnapshot(snapshot.getPath(), false, sorgente);
+				return;
+			}
+			catch (IOException e) { /* Snapshot non valido: ricostruiscilo dal file .data */
+				System.err.println("Snapshot ignorato: " + e.getMessage());
 			}
+		}
+		/* Rilevate prima del parsing: se il file cambia durante la lettura lo snapshot risulterà non aggiornato */
+		long dimensioneSorgente = sorgente.length();
+		long modificaSorgente = sorgente.lastModified();
+		try {
+			/* Le prime 4 celle di ogni record sono le features, il nome della classe viene saltato.
+			 * I file grandi sono letti in parallelo su piu core */
+			caricaFileDelimitato(pathFile, true);
 		} 
 		catch (FileNotFoundException e) {/* Caso di file non trovato */
 			System.err.println("Eccezione: file not found lanciata");
 			e.printStackTrace();
 			throw e; /* Rimanda l'eccezione anche verso il view */
 		} 
-		finally {
-			if (bufferLetto != null) {
-				try {/* chiudi il buffer aperto*/
-					bufferLetto.close();
-				} 
-				catch (IOException e) { /* Errore durante chiusura */
-					e.printStackTrace();
-					throw e;
-				}
-			}
+		try {/* Lo snapshot velocizza solo i caricamenti successivi, un errore non blocca il caricamento */
+			salvaSnapshot(snapshot.getPath(), dimensioneSorgente, modificaSorgente);
+		}
+		catch (IOException e) {
+			System.err.println("Impossibile salvare lo snapshot: " + e.getMessage());
 		}
 	}
-	
-	/**
-	 *  Aggiungi la riga letta da file nella struttura dati  ereditata dalla superclasse 
-	 *  @param cell[] record da inserire
-	 *  */
-	private void addRow(String[] cell) throws NumberFormatException
-	{
-		for(int i=0; i<super.getFeatures().length; i++)
-			super.setElemento(i, Double.parseDouble(cell[i].toString()));
-	}
-}
\ No newline at end of file
+}
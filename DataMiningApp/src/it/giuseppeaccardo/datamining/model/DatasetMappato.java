@@ -0,0 +1,241 @@
+package it.giuseppeaccardo.datamining.model;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * <h1>Dataset Mappato!</h1>
+ * Dataset le cui colonne non risiedono nell'heap della JVM ma in file mappati in memoria (una colonna per file).
+ * Anche questa classe implementa il metodo astratto "CaricaDataset" (Template Method): alla prima apertura il file .data
+ * viene letto una sola volta e ogni feature viene scritta in un file binario "path.j.col"; alle aperture successive, se
+ * i file delle colonne sono piu recenti del file .data, vengono semplicemente rimappati senza alcun parsing.
+ * <br><br>
+ * Poichè le colonne sono mappate, il dataset puo' essere piu grande di -Xmx e puo' essere usato dal DataMining come
+ * qualunque altro dataset (selezione delle features, getRecord, toMatrix, Distanza...).
+ * @author Giuseppe Accardo
+ * @version 1.0
+ * @since   14-02-2017
+ * @see Dataset
+ * @see ColonnaMappata
+ */
+public class DatasetMappato extends Dataset
+{
+	/** Estensione dei file delle colonne **/
+	private static final String ESTENSIONE_COLONNA = ".col";
+	/** Dimensione del buffer di scrittura di ogni colonna **/
+	private static final int DIMENSIONE_BUFFER = 1 << 16;
+
+	/**
+	 *  Costruttore che definisce le features e il nome del dataset e ne carica (o rimappa) le colonne.
+	 *  @param nomeDataset nome del dataset
+	 *  @param path nome del file .data di partenza
+	 *  @param features nomi delle features
+	 *  @throws IOException errore durante la lettura del file o la mappatura delle colonne
+	 *  */
+	public DatasetMappato(String nomeDataset, String path, String... features) throws IOException
+	{
+		super(nomeDataset, features);
+		CaricaDataset(path);
+		System.out.println("Record mappati da dataset: " + super.getNumRecord());
+	}
+
+	/**
+	 *  Metodo astratto ereditato da Dataset ed reimplementato.
+	 *  Se le colonne binarie non esistono (o sono piu vecchie del file .data) vengono costruite, dopodichè sono mappate.
+	 *  @param pathFile nome del file .data
+	 *  @throws IOException
+	 *  @exception FileNotFoundException file .data non trovato e colonne non ancora costruite
+	 *  @exception NumberFormatException il file contiene valori non numerici
+	 *  */
+	protected void CaricaDataset(String pathFile) throws IOException
+	{
+		File sorgente = new File(pathFile);
+		File[] fileColonne = new File[getFeatures().length];
+		for(int j=0; j<fileColonne.length; j++)
+			fileColonne[j] = new File(pathFile + "." + j + ESTENSIONE_COLONNA);
+
+		if(!colonneAggiornate(sorgente, fileColonne))
+			costruisciColonne(sorgente, fileColonne);
+
+		/* Sostituisci le colonne vuote create da inizializzaTabella con quelle mappate */
+		for(int j=0; j<fileColonne.length; j++)
+			getTabella().set(j, ColonnaMappata.apri(fileColonne[j]));
+
+		for(Colonna colonna : getTabella())
+			if(colonna.size() != getNumRecord())
+				throw new IOException("Le colonne mappate hanno un numero di record diverso: " + pathFile);
+	}
+
+	/**
+	 * Verifica se i file delle colonne esistono e sono piu recenti del file .data
+	 * @param sorgente file .data
+	 * @param fileColonne file delle colonne
+	 * @return true se le colonne possono essere rimappate senza parsing
+	 */
+	private boolean colonneAggiornate(File sorgente, File[] fileColonne)
+	{
+		for(File file : fileColonne)
+		{
+			if(!file.isFile())
+				return false;
+			/* Se il file .data non c'è piu, le colonne sono l'unica copia del dataset */
+			if(sorgente.exists() && file.lastModified() < sorgente.lastModified())
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Legge il file .data una sola volta scrivendo ogni feature nel suo file binario. I valori non sono mai conservati
+	 * nell'heap, quindi anche la costruzione funziona su file piu grandi della memoria.
+	 * <br><br>
+	 * Le colonne sono scritte in file temporanei nella stessa cartella e, solo se tutte sono state scritte e chiuse,
+	 * rinominate atomicamente al posto delle precedenti: i file gia' mappati da un altro DatasetMappato non vengono
+	 * mai troncati o riscritti (restano validi finchè sono mappati) e un'interruzione durante la costruzione non lascia
+	 * colonne a meta' con il nome definitivo.
+	 * @param sorgente file .data
+	 * @param fileColonne file delle colonne da scrivere
+	 * @throws IOException errore di lettura o scrittura
+	 */
+	private void costruisciColonne(File sorgente, File[] fileColonne) throws IOException
+	{
+		File[] temporanei = new File[fileColonne.length];
+		ColonnaInScrittura[] colonne = new ColonnaInScrittura[fileColonne.length];
+		Throwable errore = null;
+		try
+		{
+			for(int j=0; j<colonne.length; j++)
+			{
+				File cartella = fileColonne[j].getAbsoluteFile().getParentFile();
+				temporanei[j] = File.createTempFile(fileColonne[j].getName() + ".", ".tmp", cartella);
+				colonne[j] = new ColonnaInScrittura(temporanei[j]);
+			}
+			LettoreCSV.carica(sorgente.getPath(), colonne);
+		}
+		catch (FileNotFoundException e) {/* Caso di file non trovato */
+			System.err.println("Eccezione: file not found lanciata");
+			errore = e;
+		}
+		catch (UncheckedIOException e) {/* Errore di scrittura di una colonna */
+			errore = e.getCause();
+		}
+		catch (IOException | RuntimeException | Error e) {
+			errore = e;
+		}
+
+		/* Chiudi (e svuota) tutte le colonne anche se la chiusura di una fallisce */
+		for(ColonnaInScrittura colonna : colonne)
+		{
+			if(colonna == null)
+				continue;
+			try {
+				colonna.close();
+			}
+			catch(IOException e) {
+				if(errore == null)
+					errore = e;
+				else
+					errore.addSuppressed(e);
+			}
+		}
+		if(errore == null)
+			try
+			{	/* Solo ora le colonne complete prendono il posto delle precedenti */
+				for(int j=0; j<fileColonne.length; j++)
+					Files.move(temporanei[j].toPath(), fileColonne[j].toPath(),
+							   StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			}
+			catch(IOException e) {
+				errore = e;
+			}
+		if(errore == null)
+			return;
+
+		/* Non lasciare colonne a meta', verrebbero rimappate al prossimo avvio */
+		for(File file : temporanei)
+			if(file != null)
+				file.delete();
+		if(errore instanceof IOException)
+			throw (IOException)errore;
+		if(errore instanceof Error)
+			throw (Error)errore;
+		throw (RuntimeException)errore;
+	}
+
+	/**
+	 * Colonna utilizzata solo durante la costruzione: i valori aggiunti sono scritti (little-endian) nel file
+	 * della colonna attraverso un piccolo buffer, senza essere conservati.
+	 */
+	private static class ColonnaInScrittura implements Colonna, Closeable
+	{
+		/** Canale del file della colonna **/
+		private final FileChannel canale;
+		/** Buffer di scrittura **/
+		private final ByteBuffer buffer;
+		/** Numero di valori scritti **/
+		private int size;
+
+		ColonnaInScrittura(File file) throws IOException
+		{
+			canale = new FileOutputStream(file).getChannel();
+			buffer = ByteBuffer.allocateDirect(DIMENSIONE_BUFFER).order(ByteOrder.LITTLE_ENDIAN);
+		}
+
+		@Override
+		public double get(int i)
+		{
+			throw new UnsupportedOperationException("Colonna in scrittura");
+		}
+
+		@Override
+		public int size()
+		{
+			return size;
+		}
+
+		@Override
+		public void add(double valore)
+		{
+			if(buffer.remaining() < Double.BYTES)
+				svuota();
+			buffer.putDouble(valore);
+			size++;
+		}
+
+		/** Scrive nel file il contenuto del buffer **/
+		private void svuota()
+		{
+			buffer.flip();
+			try {
+				while(buffer.hasRemaining())
+					canale.write(buffer);
+			}
+			catch(IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			buffer.clear();
+		}
+
+		@Override
+		public void close() throws IOException
+		{
+			try {
+				svuota();
+			}
+			catch(UncheckedIOException e) {
+				throw e.getCause();
+			}
+			finally {
+				canale.close();
+			}
+		}
+	}
+}
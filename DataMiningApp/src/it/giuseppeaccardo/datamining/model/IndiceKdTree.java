@@ -0,0 +1,455 @@
+package it.giuseppeaccardo.datamining.model;
+
+import java.util.Arrays;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * <h1>Indice Kd-Tree!</h1>
+ * Albero kd costruito una sola volta sui record di un dataset (con le sue feature selezionate) e riutilizzabile per piu
+ * esecuzioni del K-Means, anche con k diversi. Ogni nodo copre una porzione dei record, divisa a metà lungo la feature
+ * piu "larga", e conserva il rettangolo (minimi e massimi per feature) che contiene i suoi record, la loro somma e il
+ * loro numero.
+ * <br><br>
+ * Il K-Means usa l'algoritmo di filtraggio di Kanungo: si scende nell'albero portando l'insieme dei centroidi candidati
+ * per il nodo. In ogni nodo si prende il candidato z* piu vicino al centro del rettangolo e si scarta ogni candidato z
+ * che è piu lontano di z* da <b>tutti</b> i punti del rettangolo (basta verificarlo sul vertice del rettangolo nella
+ * direzione z - z*). Quando resta un solo candidato l'intero sotto-albero gli viene assegnato in un colpo, usando somma
+ * e numero di record del nodo, senza visitare i record: sui dati con poche features un'iterazione costa molto meno di
+ * n·k distanze. Le etichette dei record sono scritte solo nel passaggio finale.
+ * <br><br>
+ * Poichè le somme dei cluster sono ottenute da raggruppamenti di nodi che cambiano con il filtraggio, a partizione
+ * invariata i centroidi possono ancora cambiare nell'ultima cifra: l'algoritmo si ferma quando nessun centroide si sposta
+ * piu di 10^-12 volte la diagonale del rettangolo dei record (molto meno dello spostamento causato da un record che
+ * cambia cluster), oppure dopo un numero massimo di iterazioni.
+ * <br><br>
+ * La costruzione e il filtraggio dei sotto-alberi grandi sono eseguiti in parallelo dal pool Fork/Join. L'indice non
+ * viene modificato dal K-Means, quindi piu esecuzioni possono usarlo contemporaneamente.
+ * <br><br>
+ * Le features dei record sono copiate in un unico array di n·d valori, quindi n·d non può superare la dimensione
+ * massima di un array (circa 2^31): ad esempio al piu circa 107 milioni di record con 20 features. I nodi sono meno dei
+ * record, quindi anche i loro array restano entro questo limite.
+ * @author Giuseppe Accardo
+ * @version 1.0
+ * @since   14-02-2017
+ * @see DataMining
+ * @see PoolCalcolo
+ */
+public class IndiceKdTree
+{
+	/** Numero massimo di record in una foglia **/
+	private static final int FOGLIA = 16;
+	/** Spostamento dei centroidi, relativo alla diagonale del rettangolo di tutti i record, sotto il quale sono fermi **/
+	private static final double TOLLERANZA_RELATIVA = 1e-12;
+	/** Numero di record e di features **/
+	private final int n, d;
+	/** Features dei record nell'ordine dell'albero (record p, feature f in posizione p*d+f) **/
+	private final double[] punti;
+	/** Indice nel dataset del record in posizione p **/
+	private final int[] indici;
+	/** Porzione [inizio, fine) dei record di ogni nodo **/
+	private final int[] inizio, fine;
+	/** Figli di ogni nodo (-1 per le foglie) **/
+	private final int[] sinistro, destro;
+	/** Rettangolo e somma delle features dei record di ogni nodo (nodo v, feature f in posizione v*d+f) **/
+	private final double[] minimi, massimi, somme;
+	/** Numero di record sotto il quale la costruzione e il filtraggio non si dividono piu tra i thread **/
+	private final int soglia;
+
+	/**
+	 * Costruisce l'indice sui record del dataset
+	 * @param dataset dataset da indicizzare
+	 * @throws IllegalArgumentException n·d supera la dimensione massima di un array
+	 */
+	public IndiceKdTree(Dataset dataset)
+	{
+		n = dataset.getNumRecord();
+		d = dataset.getFeatureUsate().size();
+		/* Entro questo limite anche gli indici p*d+f restano nell'intervallo degli int */
+		long dimensione = (long) n * d;
+		if(dimensione > AlgoritmoKmeans.MASSIMO_ARRAY)
+			throw new IllegalArgumentException("IndiceKdTree: " + n + " record per " + d + " features (" + dimensione
+											   + ") superano la dimensione massima di un array");
+		punti = new double[(int) dimensione];
+		indici = new int[n];
+		double[] punto = new double[d];
+		for(int i=0; i<n; i++)
+		{
+			dataset.getRecord(i, punto);
+			System.arraycopy(punto, 0, punti, i * d, d);
+			indici[i] = i;
+		}
+		int nodi = contaNodi(n);
+		inizio = new int[nodi];
+		fine = new int[nodi];
+		sinistro = new int[nodi];
+		destro = new int[nodi];
+		minimi = new double[nodi * d];
+		massimi = new double[nodi * d];
+		somme = new double[nodi * d];
+		soglia = TaskAssegnazione.soglia(n);
+		if(n > 0)
+			PoolCalcolo.get().invoke(new TaskCostruzione(0, 0, n));
+	}
+
+	/**
+	 * Numero di nodi dell'albero su m record
+	 * @param m numero di record
+	 * @return numero di nodi
+	 */
+	private static int contaNodi(int m)
+	{
+		if(m <= FOGLIA)
+			return 1;
+		return 1 + contaNodi(m / 2) + contaNodi(m - m / 2);
+	}
+
+	/**
+	 * Ottieni il numero di record indicizzati
+	 * @return numero di record
+	 */
+	public int getNumRecord()
+	{
+		return n;
+	}
+
+	/**
+	 * Esegue il K-Means con il filtraggio sull'albero, partendo dai centroidi dati, finchè i centroidi non si fermano.
+	 * @param centroidi centroidi iniziali, sovrascritti con i centroidi finali
+	 * @param etichette array (lungo quanto i record) in cui scrivere il cluster di ogni record
+	 * @param conteggi array (lungo k) in cui scrivere il numero di record di ogni cluster
+	 * @return numero di iterazioni eseguite
+	 * @throws ArithmeticException un cluster è rimasto vuoto, l'algoritmo non può convergere
+	 */
+	public int kmeans(double[][] centroidi, int[] etichette, int[] conteggi) throws ArithmeticException
+	{
+		return kmeans(centroidi, etichette, conteggi, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Esegue il K-Means con il filtraggio sull'albero, partendo dai centroidi dati, finchè i centroidi non si fermano o
+	 * fino al numero massimo di iterazioni. Le etichette e i conteggi sono sempre quelli dei centroidi finali.
+	 * @param centroidi centroidi iniziali, sovrascritti con i centroidi finali
+	 * @param etichette array (lungo quanto i record) in cui scrivere il cluster di ogni record
+	 * @param conteggi array (lungo k) in cui scrivere il numero di record di ogni cluster
+	 * @param maxIterazioni numero massimo di iterazioni (almeno 1)
+	 * @return numero di iterazioni eseguite
+	 * @throws ArithmeticException un cluster è rimasto vuoto, l'algoritmo non può convergere
+	 */
+	public int kmeans(double[][] centroidi, int[] etichette, int[] conteggi, int maxIterazioni)
+		throws ArithmeticException
+	{
+		if(maxIterazioni < 1)
+			throw new IllegalArgumentException("Iterazioni massime: " + maxIterazioni);
+		int k = centroidi.length;
+		/* Spostamento al quadrato sotto il quale i centroidi sono fermi */
+		double diagonale = 0;
+		for(int f=0; f<d; f++)
+			diagonale += (massimi[f] - minimi[f]) * (massimi[f] - minimi[f]);
+		double fermo = TOLLERANZA_RELATIVA * TOLLERANZA_RELATIVA * diagonale;
+		int iterazioni = 0;
+		double spostamento = Double.POSITIVE_INFINITY;
+		while(spostamento > fermo && iterazioni < maxIterazioni)
+		{
+			TaskFiltro filtro = filtra(centroidi, null);
+			iterazioni++;
+			spostamento = 0;
+			for(int j=0; j<k; j++)
+			{
+				if(filtro.conteggiCluster[j] == 0)
+					throw new ArithmeticException("Cluster " + j + " vuoto");
+				double quadrato = 0;
+				for(int f=0; f<d; f++)
+				{
+					double nuovo = filtro.sommeCluster[j * d + f] / filtro.conteggiCluster[j];
+					quadrato += (nuovo - centroidi[j][f]) * (nuovo - centroidi[j][f]);
+					centroidi[j][f] = nuovo;
+				}
+				spostamento = Math.max(spostamento, quadrato);
+			}
+		}
+		/* Passaggio finale: scrivi le etichette */
+		TaskFiltro finale = filtra(centroidi, etichette);
+		System.arraycopy(finale.conteggiCluster, 0, conteggi, 0, k);
+		return iterazioni;
+	}
+
+	/**
+	 * Esegue un passaggio di filtraggio dalla radice con tutti i centroidi candidati
+	 * @param centroidi centroidi correnti
+	 * @param etichette array delle etichette da scrivere, null per accumulare solo somme e conteggi
+	 * @return filtro eseguito, con somme e conteggi per cluster
+	 */
+	private TaskFiltro filtra(double[][] centroidi, int[] etichette)
+	{
+		int[] tutti = new int[centroidi.length];
+		for(int j=0; j<tutti.length; j++)
+			tutti[j] = j;
+		TaskFiltro filtro = new TaskFiltro(centroidi, etichette, 0, tutti);
+		if(n > 0)
+			PoolCalcolo.get().invoke(filtro);
+		else
+			filtro.accumulatori();
+		return filtro;
+	}
+
+	/**
+	 * Compito Fork/Join che costruisce il sotto-albero di un nodo
+	 */
+	@SuppressWarnings("serial")
+	private final class TaskCostruzione extends RecursiveAction
+	{
+		private final int nodo, da, a;
+
+		TaskCostruzione(int nodo, int da, int a)
+		{
+			this.nodo = nodo;
+			this.da = da;
+			this.a = a;
+		}
+
+		@Override
+		protected void compute()
+		{
+			costruisci(nodo, da, a, true);
+		}
+
+		/**
+		 * Costruisce il nodo sui record [da, a) e i suoi figli, in parallelo se la porzione è grande
+		 */
+		private void costruisci(int nodo, int da, int a, boolean parallelo)
+		{
+			inizio[nodo] = da;
+			fine[nodo] = a;
+			int base = nodo * d;
+			for(int f=0; f<d; f++)
+			{
+				minimi[base + f] = Double.POSITIVE_INFINITY;
+				massimi[base + f] = Double.NEGATIVE_INFINITY;
+			}
+			for(int p=da; p<a; p++)
+				for(int f=0; f<d; f++)
+				{
+					double valore = punti[p * d + f];
+					minimi[base + f] = Math.min(minimi[base + f], valore);
+					massimi[base + f] = Math.max(massimi[base + f], valore);
+				}
+			if(a - da <= FOGLIA)
+			{
+				sinistro[nodo] = destro[nodo] = -1;
+				for(int p=da; p<a; p++)
+					for(int f=0; f<d; f++)
+						somme[base + f] += punti[p * d + f];
+				return;
+			}
+			/* Dividi a metà lungo la feature piu larga */
+			int asse = 0;
+			for(int f=1; f<d; f++)
+				if(massimi[base + f] - minimi[base + f] > massimi[base + asse] - minimi[base + asse])
+					asse = f;
+			int meta = da + (a - da) / 2;
+			seleziona(da, a, meta, asse);
+			int sx = nodo + 1;
+			int dx = nodo + 1 + contaNodi(meta - da);
+			sinistro[nodo] = sx;
+			destro[nodo] = dx;
+			if(parallelo && a - da > soglia)
+				invokeAll(new TaskCostruzione(sx, da, meta), new TaskCostruzione(dx, meta, a));
+			else
+			{
+				costruisci(sx, da, meta, false);
+				costruisci(dx, meta, a, false);
+			}
+			for(int f=0; f<d; f++)
+				somme[base + f] = somme[sx * d + f] + somme[dx * d + f];
+		}
+
+		/**
+		 * Quickselect: riordina i record [da, a) in modo che quello in posizione k sia al suo posto lungo l'asse,
+		 * con i minori prima e i maggiori dopo
+		 */
+		private void seleziona(int da, int a, int k, int asse)
+		{
+			int sx = da, dx = a - 1;
+			while(sx < dx)
+			{
+				double perno = punti[((sx + dx) >>> 1) * d + asse];
+				int i = sx, j = dx;
+				while(i <= j)
+				{
+					while(punti[i * d + asse] < perno)
+						i++;
+					while(punti[j * d + asse] > perno)
+						j--;
+					if(i <= j)
+						scambia(i++, j--);
+				}
+				if(k <= j)
+					dx = j;
+				else if(k >= i)
+					sx = i;
+				else
+					return;
+			}
+		}
+
+		private void scambia(int p, int q)
+		{
+			for(int f=0; f<d; f++)
+			{
+				double t = punti[p * d + f];
+				punti[p * d + f] = punti[q * d + f];
+				punti[q * d + f] = t;
+			}
+			int t = indici[p];
+			indici[p] = indici[q];
+			indici[q] = t;
+		}
+	}
+
+	/**
+	 * Compito Fork/Join che filtra i candidati in un sotto-albero, accumulando somme e conteggi per cluster
+	 */
+	@SuppressWarnings("serial")
+	private final class TaskFiltro extends RecursiveAction
+	{
+		private final double[][] centroidi;
+		private final int[] etichette;
+		private final int nodo;
+		private final int[] candidati;
+		private int[] conteggiCluster;
+		private double[] sommeCluster;
+
+		TaskFiltro(double[][] centroidi, int[] etichette, int nodo, int[] candidati)
+		{
+			this.centroidi = centroidi;
+			this.etichette = etichette;
+			this.nodo = nodo;
+			this.candidati = candidati;
+		}
+
+		void accumulatori()
+		{
+			conteggiCluster = new int[centroidi.length];
+			sommeCluster = new double[centroidi.length * d];
+		}
+
+		@Override
+		protected void compute()
+		{
+			int[] rimasti = poda(nodo, candidati);
+			if(rimasti.length == 1 || sinistro[nodo] < 0 || fine[nodo] - inizio[nodo] <= soglia)
+			{
+				accumulatori();
+				visita(nodo, rimasti, new double[d]);
+				return;
+			}
+			TaskFiltro sx = new TaskFiltro(centroidi, etichette, sinistro[nodo], rimasti);
+			TaskFiltro dx = new TaskFiltro(centroidi, etichette, destro[nodo], rimasti);
+			invokeAll(sx, dx);
+			conteggiCluster = sx.conteggiCluster;
+			sommeCluster = sx.sommeCluster;
+			for(int j=0; j<conteggiCluster.length; j++)
+				conteggiCluster[j] += dx.conteggiCluster[j];
+			for(int j=0; j<sommeCluster.length; j++)
+				sommeCluster[j] += dx.sommeCluster[j];
+		}
+
+		/**
+		 * Visita sequenziale di un sotto-albero con i candidati già filtrati per il nodo
+		 */
+		private void visita(int nodo, int[] rimasti, double[] punto)
+		{
+			if(rimasti.length == 1)
+			{	/* Tutto il sotto-albero appartiene all'unico candidato */
+				int z = rimasti[0];
+				conteggiCluster[z] += fine[nodo] - inizio[nodo];
+				for(int f=0; f<d; f++)
+					sommeCluster[z * d + f] += somme[nodo * d + f];
+				if(etichette != null)
+					for(int p=inizio[nodo]; p<fine[nodo]; p++)
+						etichette[indici[p]] = z;
+				return;
+			}
+			if(sinistro[nodo] < 0)
+			{	/* Foglia: assegna i record uno per uno (candidati in ordine di indice: a parità vince il minore) */
+				for(int p=inizio[nodo]; p<fine[nodo]; p++)
+				{
+					System.arraycopy(punti, p * d, punto, 0, d);
+					int z = rimasti[0];
+					double migliore = KernelDistanza.distanzaQuadrata(punto, centroidi[z]);
+					for(int c=1; c<rimasti.length; c++)
+					{
+						double dq = KernelDistanza.distanzaQuadrata(punto, centroidi[rimasti[c]]);
+						if(dq < migliore)
+						{
+							migliore = dq;
+							z = rimasti[c];
+						}
+					}
+					conteggiCluster[z]++;
+					for(int f=0; f<d; f++)
+						sommeCluster[z * d + f] += punto[f];
+					if(etichette != null)
+						etichette[indici[p]] = z;
+				}
+				return;
+			}
+			visita(sinistro[nodo], poda(sinistro[nodo], rimasti), punto);
+			visita(destro[nodo], poda(destro[nodo], rimasti), punto);
+		}
+
+		/**
+		 * Scarta i candidati che sono piu lontani di z* da tutto il rettangolo del nodo
+		 * @param nodo nodo
+		 * @param candidati candidati in ordine di indice
+		 * @return candidati rimasti, in ordine di indice
+		 */
+		private int[] poda(int nodo, int[] candidati)
+		{
+			if(candidati.length == 1)
+				return candidati;
+			int base = nodo * d;
+			/* z*: candidato piu vicino al centro del rettangolo */
+			int migliore = candidati[0];
+			double distanzaMigliore = Double.POSITIVE_INFINITY;
+			for(int z : candidati)
+			{
+				double distanza = 0;
+				for(int f=0; f<d; f++)
+				{
+					double delta = (minimi[base + f] + massimi[base + f]) / 2 - centroidi[z][f];
+					distanza += delta * delta;
+				}
+				if(distanza < distanzaMigliore)
+				{
+					distanzaMigliore = distanza;
+					migliore = z;
+				}
+			}
+			double[] stella = centroidi[migliore];
+			int[] rimasti = new int[candidati.length];
+			int quanti = 0;
+			for(int z : candidati)
+			{
+				if(z == migliore)
+				{
+					rimasti[quanti++] = z;
+					continue;
+				}
+				/* Vertice del rettangolo piu favorevole a z, e confronto delle distanze su quel vertice */
+				double[] centroide = centroidi[z];
+				double dz = 0, ds = 0;
+				for(int f=0; f<d; f++)
+				{
+					double vertice = centroide[f] > stella[f] ? massimi[base + f] : minimi[base + f];
+					dz += (vertice - centroide[f]) * (vertice - centroide[f]);
+					ds += (vertice - stella[f]) * (vertice - stella[f]);
+				}
+				/* A parità z vince solo se ha indice minore di z*, come nel K-Means classico */
+				if(dz < ds || (dz == ds && z < migliore))
+					rimasti[quanti++] = z;
+			}
+			return quanti == candidati.length ? candidati : Arrays.copyOf(rimasti, quanti);
+		}
+	}
+}
@@ -0,0 +1,495 @@
+package it.giuseppeaccardo.datamining.model;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * <h1>Inizializzazione K-Means!</h1>
+ * Scelta dei centroidi iniziali del K-Means. Scegliere k record a caso (assegnaCentroidiClusterRandom) può prendere
+ * lo stesso record piu volte o record molto vicini tra loro: l'algoritmo impiega molte iterazioni o lascia un cluster
+ * vuoto e diverge. Qui sono implementate due scelte "pesate" sulla distanza:
+ * <ul>
+ * <li><b>k-means++</b>: il primo centroide è un record a caso, ogni centroide successivo è estratto con probabilità
+ * proporzionale al quadrato della distanza D(x) dal centroide già scelto piu vicino. I record già scelti (D(x) = 0) non
+ * possono essere estratti di nuovo. Richiede k passaggi sui record.</li>
+ * <li><b>k-means||</b> (k-means parallelo): in pochi passaggi (5) ogni record è scelto indipendentemente con probabilità
+ * 2k·D(x)²/ψ, dove ψ è la somma dei D(x)²; i candidati ottenuti (circa 10k) sono pesati con il numero di record a loro
+ * piu vicini e ridotti a k con k-means++ pesato, rifinito da poche iterazioni di K-Means pesato. Adatto ai dataset con moltissimi record.</li>
+ * </ul>
+ * In entrambi i casi l'aggiornamento delle distanze D(x), che è la parte costosa, è eseguito in parallelo dal pool
+ * Fork/Join su blocchi di record. Le estrazioni dipendono solo dal seme (ogni blocco ha il proprio generatore nel
+ * k-means||) e dalla divisione in blocchi, che dipende solo dal numero di record (TaskAssegnazione.soglia) e non dal
+ * numero di thread, quindi lo stesso seme produce gli stessi centroidi qualunque sia il numero di core.
+ * @author Giuseppe Accardo
+ * @version 1.0
+ * @since   14-02-2017
+ * @see DataMining
+ * @see PoolCalcolo
+ */
+public final class InizializzazioneKmeans
+{
+	/** Record oltre i quali i centroidi iniziali sono scelti con k-means|| invece di k-means++ **/
+	private static final int SOGLIA_KMEANS_PARALLELO = 100000;
+	/** Numero di passaggi di campionamento del k-means|| **/
+	private static final int PASSAGGI = 5;
+	/** Iterazioni massime del K-Means pesato sui candidati del k-means|| **/
+	private static final int ITERAZIONI_CANDIDATI = 10;
+
+	/** Classe di sola utilita', non istanziabile **/
+	private InizializzazioneKmeans() {}
+
+	/**
+	 * Sceglie k centroidi iniziali con k-means++ o, sui dataset con molti record, con k-means|| che richiede solo pochi
+	 * passaggi sui record
+	 * @param dataset dataset da clusterizzare
+	 * @param k numero di cluster
+	 * @param seme seme del generatore casuale
+	 * @return k centroidi iniziali
+	 */
+	public static double[][] scegli(Dataset dataset, int k, long seme)
+	{
+		if(dataset.getNumRecord() > SOGLIA_KMEANS_PARALLELO)
+			return kmeansParallelo(dataset, k, seme);
+		return kmeansPiuPiu(dataset, k, seme);
+	}
+
+	/**
+	 * Sceglie k centroidi iniziali con k-means++
+	 * @param dataset dataset da clusterizzare
+	 * @param k numero di cluster
+	 * @param seme seme del generatore casuale
+	 * @return k centroidi iniziali
+	 */
+	public static double[][] kmeansPiuPiu(Dataset dataset, int k, long seme)
+	{
+		Random random = new Random(seme);
+		Distanze distanze = new Distanze(dataset);
+		double[][] centroidi = new double[k][];
+		centroidi[0] = distanze.record(random.nextInt(distanze.n));
+		distanze.aggiorna(centroidi, 0, 1);
+		for(int j=1; j<k; j++)
+		{
+			centroidi[j] = distanze.record(distanze.estrai(random));
+			distanze.aggiorna(centroidi, j, j + 1);
+		}
+		return centroidi;
+	}
+
+	/**
+	 * Aggiunge un centroide a centroidi già esistenti con un passo di k-means++ (es. per partire dai centroidi finali
+	 * di un K-Means con un cluster in meno)
+	 * @param dataset dataset da clusterizzare
+	 * @param centroidi centroidi esistenti (non modificati)
+	 * @param seme seme del generatore casuale
+	 * @return copia dei centroidi esistenti seguita dal nuovo centroide
+	 */
+	public static double[][] aggiungiCentroide(Dataset dataset, double[][] centroidi, long seme)
+	{
+		Distanze distanze = new Distanze(dataset);
+		distanze.aggiorna(centroidi, 0, centroidi.length);
+		double[][] nuovi = new double[centroidi.length + 1][];
+		for(int j=0; j<centroidi.length; j++)
+			nuovi[j] = centroidi[j].clone();
+		nuovi[centroidi.length] = distanze.record(distanze.estrai(new Random(seme)));
+		return nuovi;
+	}
+
+	/**
+	 * Sceglie k centroidi iniziali con k-means++ su un campione casuale di record, senza nessun passaggio completo sul
+	 * dataset (usato dal K-Means mini-batch)
+	 * @param dataset dataset da clusterizzare
+	 * @param k numero di cluster
+	 * @param dimensioneCampione numero di record da estrarre (almeno k)
+	 * @param seme seme del generatore casuale
+	 * @return k centroidi iniziali
+	 */
+	public static double[][] kmeansPiuPiuCampione(Dataset dataset, int k, int dimensioneCampione, long seme)
+	{
+		Random random = new Random(seme);
+		int n = dataset.getNumRecord();
+		int d = dataset.getFeatureUsate().size();
+		double[][] campione = new double[Math.max(k, dimensioneCampione)][];
+		double[] pesi = new double[campione.length];
+		for(int i=0; i<campione.length; i++)
+		{
+			campione[i] = dataset.getRecord(random.nextInt(n), new double[d]);
+			pesi[i] = 1;
+		}
+		return kmeansPiuPiuPesato(campione, pesi, k, random);
+	}
+
+	/**
+	 * Sceglie k centroidi iniziali con k-means|| (campionamento parallelo sovra-dimensionato)
+	 * @param dataset dataset da clusterizzare
+	 * @param k numero di cluster
+	 * @param seme seme del generatore casuale
+	 * @return k centroidi iniziali
+	 */
+	public static double[][] kmeansParallelo(Dataset dataset, int k, long seme)
+	{
+		Random random = new Random(seme);
+		Distanze distanze = new Distanze(dataset);
+		/* I candidati crescono ad ogni passaggio: al massimo 1 + PASSAGGI·(circa 2k) */
+		double[][] candidati = new double[Math.max(16, 1 + PASSAGGI * 3 * k)][];
+		int m = 0;
+		candidati[m++] = distanze.record(random.nextInt(distanze.n));
+		distanze.aggiorna(candidati, 0, 1);
+		for(int passaggio=0; passaggio<PASSAGGI; passaggio++)
+		{
+			int[] scelti = distanze.campiona(2.0 * k, random.nextLong());
+			if(m + scelti.length > candidati.length)
+				candidati = Arrays.copyOf(candidati, Math.max(2 * candidati.length, m + scelti.length));
+			int primo = m;
+			for(int i : scelti)
+				candidati[m++] = distanze.record(i);
+			distanze.aggiorna(candidati, primo, m);
+		}
+		/* Pochi record distinti: completa con record a caso (con le distanze aggiornate, per pesarli) */
+		int primoCasuale = m;
+		while(m < k)
+		{
+			if(m == candidati.length)
+				candidati = Arrays.copyOf(candidati, 2 * m);
+			candidati[m++] = distanze.record(random.nextInt(distanze.n));
+		}
+		if(primoCasuale < m)
+			distanze.aggiorna(candidati, primoCasuale, m);
+		/* Peso di ogni candidato: numero di record di cui è il candidato piu vicino */
+		double[] pesi = new double[m];
+		for(int i=0; i<distanze.n; i++)
+			pesi[distanze.vicino[i]]++;
+		candidati = Arrays.copyOf(candidati, m);
+		return kmeansPesato(candidati, pesi, kmeansPiuPiuPesato(candidati, pesi, k, random));
+	}
+
+	/**
+	 * k-means++ su pochi punti pesati (i candidati del k-means||)
+	 * @param punti punti da ridurre
+	 * @param pesi peso di ogni punto
+	 * @param k numero di centroidi da scegliere
+	 * @param random generatore casuale
+	 * @return k centroidi
+	 */
+	private static double[][] kmeansPiuPiuPesato(double[][] punti, double[] pesi, int k, Random random)
+	{
+		int m = punti.length;
+		double[] minimi = new double[m];
+		Arrays.fill(minimi, Double.POSITIVE_INFINITY);
+		double[][] centroidi = new double[k][];
+		/* Il primo centroide è estratto in base al solo peso */
+		int scelto = estrai(pesi, null, random);
+		for(int j=0; j<k; j++)
+		{
+			centroidi[j] = punti[scelto].clone();
+			for(int i=0; i<m; i++)
+				minimi[i] = Math.min(minimi[i], KernelDistanza.distanzaQuadrata(punti[i], centroidi[j]));
+			if(j + 1 < k)
+				scelto = estrai(pesi, minimi, random);
+		}
+		return centroidi;
+	}
+
+	/**
+	 * Poche iterazioni di K-Means pesato sui candidati, a partire dai centroidi dati
+	 * @param punti candidati
+	 * @param pesi peso di ogni candidato
+	 * @param centroidi centroidi iniziali, aggiornati
+	 * @return centroidi rifiniti
+	 */
+	private static double[][] kmeansPesato(double[][] punti, double[] pesi, double[][] centroidi)
+	{
+		int k = centroidi.length, d = centroidi[0].length;
+		int[] etichette = new int[punti.length];
+		Arrays.fill(etichette, -1);
+		for(int iterazione=0; iterazione<ITERAZIONI_CANDIDATI; iterazione++)
+		{
+			boolean cambiato = false;
+			double[][] somme = new double[k][d];
+			double[] pesiCluster = new double[k];
+			for(int i=0; i<punti.length; i++)
+			{
+				int c = KernelDistanza.piuVicino(punti[i], centroidi);
+				cambiato |= c != etichette[i];
+				etichette[i] = c;
+				pesiCluster[c] += pesi[i];
+				for(int f=0; f<d; f++)
+					somme[c][f] += pesi[i] * punti[i][f];
+			}
+			if(!cambiato)
+				break;
+			/* Un cluster senza candidati mantiene il proprio centroide */
+			for(int c=0; c<k; c++)
+				if(pesiCluster[c] > 0)
+					for(int f=0; f<d; f++)
+						centroidi[c][f] = somme[c][f] / pesiCluster[c];
+		}
+		return centroidi;
+	}
+
+	/**
+	 * Estrae un indice con probabilità proporzionale a peso·minimo (solo peso se minimi è null)
+	 * @param pesi pesi
+	 * @param minimi distanze al quadrato, o null
+	 * @param random generatore casuale
+	 * @return indice estratto
+	 */
+	private static int estrai(double[] pesi, double[] minimi, Random random)
+	{
+		double totale = 0;
+		for(int i=0; i<pesi.length; i++)
+			totale += pesi[i] * (minimi == null ? 1 : minimi[i]);
+		if(totale == 0) /* Tutti i punti sono già centroidi */
+			return random.nextInt(pesi.length);
+		double soglia = random.nextDouble() * totale;
+		int ultimo = 0;
+		for(int i=0; i<pesi.length; i++)
+		{
+			double massa = pesi[i] * (minimi == null ? 1 : minimi[i]);
+			if(massa > 0)
+			{
+				ultimo = i;
+				soglia -= massa;
+				if(soglia < 0)
+					return i;
+			}
+		}
+		return ultimo;
+	}
+
+	/**
+	 * <h1>Distanze!</h1>
+	 * Distanza al quadrato D(x)² di ogni record dal centroide (o candidato) già scelto piu vicino, con la somma per
+	 * blocchi di record usata per le estrazioni.
+	 */
+	private static final class Distanze
+	{
+		final Dataset dataset;
+		final int n, d;
+		/** Dimensione di un blocco di record e numero di blocchi **/
+		final int blocco, blocchi;
+		/** D(x)² di ogni record **/
+		final double[] minimi;
+		/** Indice del centroide piu vicino ad ogni record **/
+		final int[] vicino;
+		/** Somma di D(x)² in ogni blocco **/
+		final double[] sommeBlocchi;
+
+		Distanze(Dataset dataset)
+		{
+			this.dataset = dataset;
+			this.n = dataset.getNumRecord();
+			this.d = dataset.getFeatureUsate().size();
+			/* Dipende solo da n: i generatori per blocco non cambiano con il numero di core */
+			this.blocco = TaskAssegnazione.soglia(n);
+			this.blocchi = (n + blocco - 1) / blocco;
+			this.minimi = new double[n];
+			this.vicino = new int[n];
+			this.sommeBlocchi = new double[blocchi];
+			Arrays.fill(minimi, Double.POSITIVE_INFINITY);
+		}
+
+		/**
+		 * Copia delle features di un record
+		 * @param i indice del record
+		 * @return features
+		 */
+		double[] record(int i)
+		{
+			return dataset.getRecord(i, new double[d]);
+		}
+
+		/**
+		 * Aggiorna in parallelo D(x)² con i nuovi centroidi [primo, fine)
+		 * @param centroidi centroidi
+		 * @param primo primo nuovo centroide
+		 * @param fine centroide successivo all'ultimo nuovo
+		 */
+		void aggiorna(double[][] centroidi, int primo, int fine)
+		{
+			PoolCalcolo.get().invoke(new TaskBlocchi(this, 0, blocchi, centroidi, primo, fine));
+		}
+
+		/**
+		 * Estrae un record con probabilità proporzionale a D(x)²
+		 * @param random generatore casuale
+		 * @return indice del record
+		 */
+		int estrai(Random random)
+		{
+			double totale = 0;
+			for(double somma : sommeBlocchi)
+				totale += somma;
+			if(totale == 0) /* Meno record distinti che cluster */
+				return random.nextInt(n);
+			double soglia = random.nextDouble() * totale;
+			for(int b=0; b<blocchi; b++)
+			{
+				if(soglia >= sommeBlocchi[b])
+				{
+					soglia -= sommeBlocchi[b];
+					continue;
+				}
+				int indice = estraiNelBlocco(b, soglia);
+				if(indice >= 0)
+					return indice;
+			}
+			/* Arrotondamenti: prendi l'ultimo record con D(x) > 0 */
+			for(int i=n-1; i>=0; i--)
+				if(minimi[i] > 0)
+					return i;
+			return random.nextInt(n);
+		}
+
+		/**
+		 * Scorre un blocco fino a superare la soglia
+		 * @param b blocco
+		 * @param soglia massa residua
+		 * @return indice del record, -1 se il blocco non basta (arrotondamenti)
+		 */
+		private int estraiNelBlocco(int b, double soglia)
+		{
+			int fine = Math.min(n, (b + 1) * blocco);
+			for(int i=b * blocco; i<fine; i++)
+			{
+				soglia -= minimi[i];
+				if(minimi[i] > 0 && soglia < 0)
+					return i;
+			}
+			return -1;
+		}
+
+		/**
+		 * Sceglie in parallelo ogni record con probabilità min(1, sovracampionamento·D(x)²/ψ)
+		 * @param sovracampionamento numero atteso di record scelti
+		 * @param seme seme del passaggio
+		 * @return indici dei record scelti, nell'ordine dei record
+		 */
+		int[] campiona(double sovracampionamento, long seme)
+		{
+			double totale = 0;
+			for(double somma : sommeBlocchi)
+				totale += somma;
+			if(totale == 0)
+				return new int[0];
+			int[][] scelti = new int[blocchi][];
+			PoolCalcolo.get().invoke(new TaskBlocchi(this, 0, blocchi, scelti, sovracampionamento / totale, seme));
+			int totaleScelti = 0;
+			for(int[] blocco : scelti)
+				totaleScelti += blocco.length;
+			int[] risultato = new int[totaleScelti];
+			int posizione = 0;
+			for(int[] blocco : scelti)
+			{
+				System.arraycopy(blocco, 0, risultato, posizione, blocco.length);
+				posizione += blocco.length;
+			}
+			return risultato;
+		}
+	}
+
+	/**
+	 * Compito Fork/Join su un intervallo di blocchi: aggiorna D(x)² con nuovi centroidi oppure campiona i record
+	 */
+	@SuppressWarnings("serial")
+	private static final class TaskBlocchi extends RecursiveAction
+	{
+		private final Distanze distanze;
+		private final int primoBlocco, fineBlocchi;
+		/* Aggiornamento */
+		private final double[][] centroidi;
+		private final int primo, fine;
+		/* Campionamento */
+		private final int[][] scelti;
+		private final double fattore;
+		private final long seme;
+
+		TaskBlocchi(Distanze distanze, int primoBlocco, int fineBlocchi, double[][] centroidi, int primo, int fine)
+		{
+			this(distanze, primoBlocco, fineBlocchi, centroidi, primo, fine, null, 0, 0);
+		}
+
+		TaskBlocchi(Distanze distanze, int primoBlocco, int fineBlocchi, int[][] scelti, double fattore, long seme)
+		{
+			this(distanze, primoBlocco, fineBlocchi, null, 0, 0, scelti, fattore, seme);
+		}
+
+		private TaskBlocchi(Distanze distanze, int primoBlocco, int fineBlocchi, double[][] centroidi, int primo,
+							int fine, int[][] scelti, double fattore, long seme)
+		{
+			this.distanze = distanze;
+			this.primoBlocco = primoBlocco;
+			this.fineBlocchi = fineBlocchi;
+			this.centroidi = centroidi;
+			this.primo = primo;
+			this.fine = fine;
+			this.scelti = scelti;
+			this.fattore = fattore;
+			this.seme = seme;
+		}
+
+		@Override
+		protected void compute()
+		{
+			if(fineBlocchi - primoBlocco > 1)
+			{
+				int meta = (primoBlocco + fineBlocchi) >>> 1;
+				invokeAll(new TaskBlocchi(distanze, primoBlocco, meta, centroidi, primo, fine, scelti, fattore, seme),
+						  new TaskBlocchi(distanze, meta, fineBlocchi, centroidi, primo, fine, scelti, fattore, seme));
+				return;
+			}
+			if(primoBlocco == fineBlocchi)
+				return;
+			if(scelti == null)
+				aggiornaBlocco(primoBlocco);
+			else
+				campionaBlocco(primoBlocco);
+		}
+
+		private void aggiornaBlocco(int b)
+		{
+			double[] punto = new double[distanze.d];
+			double[] minimi = distanze.minimi;
+			int fineBlocco = Math.min(distanze.n, (b + 1) * distanze.blocco);
+			double somma = 0;
+			for(int i=b * distanze.blocco; i<fineBlocco; i++)
+			{
+				distanze.dataset.getRecord(i, punto);
+				for(int j=primo; j<fine; j++)
+				{
+					double dq = KernelDistanza.distanzaQuadrata(punto, centroidi[j]);
+					if(dq < minimi[i])
+					{
+						minimi[i] = dq;
+						distanze.vicino[i] = j;
+					}
+				}
+				somma += minimi[i];
+			}
+			distanze.sommeBlocchi[b] = somma;
+		}
+
+		private void campionaBlocco(int b)
+		{
+			/* Un generatore per blocco: il risultato non dipende da quale thread elabora il blocco. Il seme del blocco è
+			 * rimescolato: SplittableRandom avanza di 0x9E3779B97F4A7C15 ad ogni estrazione, quindi semi che differiscono
+			 * per multipli di questa costante darebbero a tutti i blocchi la stessa sequenza, solo sfasata */
+			SplittableRandom random = new SplittableRandom(new SplittableRandom(seme + b).nextLong());
+			int fineBlocco = Math.min(distanze.n, (b + 1) * distanze.blocco);
+			int[] blocco = new int[16];
+			int quanti = 0;
+			for(int i=b * distanze.blocco; i<fineBlocco; i++)
+			{
+				double probabilita = fattore * distanze.minimi[i];
+				if(probabilita > 0 && random.nextDouble() < probabilita)
+				{
+					if(quanti == blocco.length)
+						blocco = Arrays.copyOf(blocco, 2 * quanti);
+					blocco[quanti++] = i;
+				}
+			}
+			scelti[b] = Arrays.copyOf(blocco, quanti);
+		}
+	}
+}
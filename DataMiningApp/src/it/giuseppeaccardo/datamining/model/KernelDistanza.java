@@ -0,0 +1,112 @@
+package it.giuseppeaccardo.datamining.model;
+
+/**
+ * <h1>Kernel Distanza!</h1>
+ * Raccolta dei calcoli di distanza utilizzati nel ciclo piu interno del k-means. Tutti i metodi lavorano su array di
+ * double primitivi (nessun unboxing) e, dove possibile, sulla distanza euclidea <b>al quadrato</b>: per trovare il
+ * centroide piu vicino basta confrontare i quadrati, poichè la radice quadrata è monotona, quindi Math.sqrt viene
+ * calcolata solo quando serve il valore vero della distanza.
+ * <br><br>
+ * Per le dimensioni piccole (2, 3 e 4 features, il caso di Iris) il ciclo è srotolato a mano; per i dataset piu larghi
+ * il ciclo usa quattro accumulatori indipendenti, in modo che le somme non dipendano l'una dall'altra e il processore
+ * (e il compilatore JIT) possa eseguirle in parallelo.
+ * @author Giuseppe Accardo
+ * @version 1.0
+ * @since   14-02-2017
+ * @see Dataset
+ * @see Cluster
+ * @see DataMining
+ */
+public final class KernelDistanza
+{
+	/** Classe di sola utilita', non istanziabile **/
+	private KernelDistanza() {}
+
+	/**
+	 * Distanza euclidea tra due punti
+	 * @param a primo punto
+	 * @param b secondo punto (almeno della stessa dimensione di a)
+	 * @return distanza euclidea
+	 */
+	public static double distanza(double[] a, double[] b)
+	{
+		return Math.sqrt(distanzaQuadrata(a, b));
+	}
+
+	/**
+	 * Distanza euclidea al quadrato tra due punti, sulla dimensione del primo punto
+	 * @param a primo punto
+	 * @param b secondo punto (almeno della stessa dimensione di a)
+	 * @return distanza euclidea al quadrato
+	 */
+	public static double distanzaQuadrata(double[] a, double[] b)
+	{
+		double d0, d1, d2, d3;
+		switch(a.length)
+		{
+			case 2:
+				d0 = a[0] - b[0]; d1 = a[1] - b[1];
+				return d0 * d0 + d1 * d1;
+			case 3:
+				d0 = a[0] - b[0]; d1 = a[1] - b[1]; d2 = a[2] - b[2];
+				return d0 * d0 + d1 * d1 + d2 * d2;
+			case 4:
+				d0 = a[0] - b[0]; d1 = a[1] - b[1]; d2 = a[2] - b[2]; d3 = a[3] - b[3];
+				return (d0 * d0 + d1 * d1) + (d2 * d2 + d3 * d3);
+			default:
+				return distanzaQuadrataLarga(a, b, a.length);
+		}
+	}
+
+	/**
+	 * Distanza al quadrato per un numero qualunque di dimensioni, con quattro accumulatori indipendenti
+	 * @param a primo punto
+	 * @param b secondo punto
+	 * @param d numero di dimensioni
+	 * @return distanza euclidea al quadrato
+	 */
+	private static double distanzaQuadrataLarga(double[] a, double[] b, int d)
+	{
+		double s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+		int j = 0;
+		for(; j + 3 < d; j += 4)
+		{
+			double d0 = a[j] - b[j];
+			double d1 = a[j+1] - b[j+1];
+			double d2 = a[j+2] - b[j+2];
+			double d3 = a[j+3] - b[j+3];
+			s0 += d0 * d0;
+			s1 += d1 * d1;
+			s2 += d2 * d2;
+			s3 += d3 * d3;
+		}
+		for(; j < d; j++)
+		{
+			double d0 = a[j] - b[j];
+			s0 += d0 * d0;
+		}
+		return (s0 + s1) + (s2 + s3);
+	}
+
+	/**
+	 * Trova il centroide piu vicino ad un punto (a parità di distanza vince il primo)
+	 * @param punto punto da assegnare
+	 * @param centroidi centroidi candidati
+	 * @return indice del centroide piu vicino
+	 */
+	public static int piuVicino(double[] punto, double[][] centroidi)
+	{
+		int migliore = 0;
+		double min = distanzaQuadrata(punto, centroidi[0]);
+		for(int j=1; j<centroidi.length; j++)
+		{
+			double dist = distanzaQuadrata(punto, centroidi[j]);
+			if(dist < min)
+			{
+				min = dist;
+				migliore = j;
+			}
+		}
+		return migliore;
+	}
+}
@@ -0,0 +1,134 @@
+package it.giuseppeaccardo.datamining.model;
+
+/**
+ * <h1>K-Means di Elkan!</h1>
+ * Variante del K-Means che usa la disuguaglianza triangolare per evitare la maggior parte dei calcoli di distanza.
+ * Per ogni record si mantengono un limite superiore u(x) alla distanza dal proprio centroide e un limite inferiore
+ * l(x,c) alla distanza da ogni altro centroide c, oltre alle distanze tra tutte le coppie di centroidi. Quando i
+ * centroidi si spostano i limiti vengono allargati dello spostamento, senza ricalcolare nulla, e il centroide c viene
+ * scartato se u(x) &lt; l(x,c) oppure se u(x) &lt; d(a,c)/2 (a centroide corrente del record): in questi casi c non può
+ * essere piu vicino di a. Quando i centroidi si stabilizzano quasi tutte le distanze vengono scartate.
+ * <br><br>
+ * I limiti inferiori occupano n·k double: per dataset con moltissimi record e poche features è piu adatta la variante
+ * con un solo limite inferiore per record (oltre la dimensione massima di un array, circa 2^31 limiti, l'esecuzione è
+ * rifiutata con IllegalArgumentException). I confronti sono stretti e in caso di parità vince il centroide di indice
+ * minore, come nel K-Means classico, quindi i cluster ottenuti sono gli stessi.
+ * @author Giuseppe Accardo
+ * @version 1.0
+ * @since   14-02-2017
+ * @see AlgoritmoKmeans
+ * @see DataMining
+ */
+public class KmeansElkan extends AlgoritmoKmeans
+{
+	/** Limite superiore della distanza di ogni record dal proprio centroide **/
+	private double[] superiori;
+	/** Limiti inferiori della distanza del record i dal centroide c, in posizione i*k+c **/
+	private double[] inferiori;
+	/** Metà della distanza tra ogni coppia di centroidi **/
+	private double[][] mezzeDistanze;
+	/** Metà della distanza di ogni centroide dal centroide piu vicino **/
+	private double[] separazioni;
+
+	@Override
+	protected void inizializza()
+	{
+		superiori = new double[n];
+		inferiori = new double[dimensionePerRecord(k)];
+		mezzeDistanze = new double[k][k];
+		separazioni = new double[k];
+	}
+
+	@Override
+	protected void preparaIterazione(boolean primo)
+	{
+		if(primo)
+			return;
+		for(int a=0; a<k; a++)
+			separazioni[a] = Double.POSITIVE_INFINITY;
+		for(int a=0; a<k; a++)
+			for(int c=a+1; c<k; c++)
+			{
+				double meta = KernelDistanza.distanza(centroidi[a], centroidi[c]) / 2;
+				mezzeDistanze[a][c] = meta;
+				mezzeDistanze[c][a] = meta;
+				separazioni[a] = Math.min(separazioni[a], meta);
+				separazioni[c] = Math.min(separazioni[c], meta);
+			}
+	}
+
+	@Override
+	protected void assegnaIntervallo(int inizio, int fine, boolean primo, Accumulatore accumulatore)
+	{
+		double[] punto = new double[d];
+		for(int i=inizio; i<fine; i++)
+		{
+			dataset.getRecord(i, punto);
+			int base = i * k;
+			int a;
+			double u, uq;
+			if(primo)
+			{
+				/* Nessun limite valido: calcola tutte le distanze */
+				a = 0;
+				uq = distanzaQuadrata(punto, 0, accumulatore);
+				inferiori[base] = Math.sqrt(uq);
+				for(int c=1; c<k; c++)
+				{
+					double dq = distanzaQuadrata(punto, c, accumulatore);
+					inferiori[base + c] = Math.sqrt(dq);
+					if(dq < uq)
+					{
+						a = c;
+						uq = dq;
+					}
+				}
+				u = Math.sqrt(uq);
+				accumulatore.cambiato();
+			}
+			else
+			{
+				a = etichette[i];
+				/* Allarga i limiti dello spostamento dei centroidi */
+				u = superiori[i] + spostamenti[a];
+				for(int c=0; c<k; c++)
+					inferiori[base + c] = Math.max(0, inferiori[base + c] - spostamenti[c]);
+				/* Se il record è vicino al proprio centroide piu di metà della distanza dagli altri, non cambia */
+				if(!(u < separazioni[a]))
+				{
+					boolean esatto = false;
+					uq = 0;
+					int precedente = a;
+					for(int c=0; c<k; c++)
+					{
+						if(c == a || u < inferiori[base + c] || u < mezzeDistanze[a][c])
+							continue;
+						if(!esatto)
+						{	/* Stringi il limite superiore al valore esatto e ricontrolla */
+							uq = distanzaQuadrata(punto, a, accumulatore);
+							u = Math.sqrt(uq);
+							inferiori[base + a] = u;
+							esatto = true;
+							if(u < inferiori[base + c] || u < mezzeDistanze[a][c])
+								continue;
+						}
+						double dq = distanzaQuadrata(punto, c, accumulatore);
+						inferiori[base + c] = Math.sqrt(dq);
+						/* A parità vince l'indice minore, come nel K-Means classico */
+						if(dq < uq || (dq == uq && c < a))
+						{
+							a = c;
+							uq = dq;
+							u = inferiori[base + c];
+						}
+					}
+					if(a != precedente)
+						accumulatore.cambiato();
+				}
+			}
+			superiori[i] = u;
+			etichette[i] = a;
+			accumulatore.aggiungi(a, punto);
+		}
+	}
+}
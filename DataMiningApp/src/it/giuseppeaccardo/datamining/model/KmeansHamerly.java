@@ -0,0 +1,138 @@
+package it.giuseppeaccardo.datamining.model;
+
+/**
+ * <h1>K-Means di Hamerly!</h1>
+ * Variante del K-Means per dataset con poche features e moltissimi record (come Iris). Rispetto a KmeansElkan mantiene
+ * solo due limiti per record: un limite superiore u(x) alla distanza dal proprio centroide e un unico limite inferiore
+ * l(x) alla distanza dal <b>secondo</b> centroide piu vicino, quindi la memoria è di 2 double per record qualunque sia k.
+ * <br><br>
+ * Quando i centroidi si spostano, u(x) cresce dello spostamento del proprio centroide e l(x) diminuisce dello spostamento
+ * massimo degli altri centroidi. Se u(x) &lt; max(l(x), s(a)), dove s(a) è metà della distanza del centroide a dal
+ * centroide piu vicino, nessun altro centroide può essere piu vicino e l'intero ciclo sui centroidi viene saltato;
+ * altrimenti si stringe u(x) al valore esatto e, solo se il controllo fallisce ancora, si calcolano tutte le k distanze.
+ * <br><br>
+ * Il centroide piu vicino è scelto come nel K-Means classico (quadrati, a parità l'indice minore), quindi i cluster
+ * ottenuti sono gli stessi; le distanze saltate sono riportate da getDistanzeEvitate().
+ * @author Giuseppe Accardo
+ * @version 1.0
+ * @since   14-02-2017
+ * @see AlgoritmoKmeans
+ * @see KmeansElkan
+ * @see DataMining
+ */
+public class KmeansHamerly extends AlgoritmoKmeans
+{
+	/** Limite superiore della distanza di ogni record dal proprio centroide **/
+	private double[] superiori;
+	/** Limite inferiore della distanza di ogni record dal secondo centroide piu vicino **/
+	private double[] inferiori;
+	/** Metà della distanza di ogni centroide dal centroide piu vicino **/
+	private double[] separazioni;
+	/** Centroide con lo spostamento massimo nell'ultimo aggiornamento **/
+	private int spostatoDiPiu;
+	/** Spostamento massimo e secondo spostamento massimo dei centroidi **/
+	private double spostamentoMassimo, secondoSpostamento;
+
+	@Override
+	protected void inizializza()
+	{
+		superiori = new double[n];
+		inferiori = new double[n];
+		separazioni = new double[k];
+	}
+
+	@Override
+	protected void preparaIterazione(boolean primo)
+	{
+		if(primo)
+			return;
+		for(int a=0; a<k; a++)
+			separazioni[a] = Double.POSITIVE_INFINITY;
+		for(int a=0; a<k; a++)
+			for(int c=a+1; c<k; c++)
+			{
+				double meta = KernelDistanza.distanza(centroidi[a], centroidi[c]) / 2;
+				separazioni[a] = Math.min(separazioni[a], meta);
+				separazioni[c] = Math.min(separazioni[c], meta);
+			}
+		/* Il limite inferiore di un record diminuisce dello spostamento massimo tra gli ALTRI centroidi */
+		spostatoDiPiu = 0;
+		spostamentoMassimo = secondoSpostamento = 0;
+		for(int c=0; c<k; c++)
+		{
+			if(spostamenti[c] > spostamentoMassimo)
+			{
+				secondoSpostamento = spostamentoMassimo;
+				spostamentoMassimo = spostamenti[c];
+				spostatoDiPiu = c;
+			}
+			else if(spostamenti[c] > secondoSpostamento)
+				secondoSpostamento = spostamenti[c];
+		}
+	}
+
+	@Override
+	protected void assegnaIntervallo(int inizio, int fine, boolean primo, Accumulatore accumulatore)
+	{
+		double[] punto = new double[d];
+		for(int i=inizio; i<fine; i++)
+		{
+			dataset.getRecord(i, punto);
+			if(primo)
+			{
+				etichette[i] = tuttiICentroidi(i, punto, accumulatore);
+				accumulatore.cambiato();
+			}
+			else
+			{
+				int a = etichette[i];
+				/* Aggiorna i limiti con gli spostamenti dei centroidi */
+				double u = superiori[i] + spostamenti[a];
+				double l = inferiori[i] - (a == spostatoDiPiu ? secondoSpostamento : spostamentoMassimo);
+				superiori[i] = u;
+				inferiori[i] = l;
+				double limite = Math.max(separazioni[a], l);
+				if(!(u < limite))
+				{	/* Stringi il limite superiore al valore esatto e ricontrolla */
+					u = Math.sqrt(distanzaQuadrata(punto, a, accumulatore));
+					superiori[i] = u;
+					if(!(u < limite))
+					{
+						etichette[i] = tuttiICentroidi(i, punto, accumulatore);
+						if(etichette[i] != a)
+							accumulatore.cambiato();
+					}
+				}
+			}
+			accumulatore.aggiungi(etichette[i], punto);
+		}
+	}
+
+	/**
+	 * Calcola le distanze del record da tutti i centroidi e ne ricostruisce i limiti
+	 * @param i indice del record
+	 * @param punto features del record
+	 * @param accumulatore accumulatore dell'intervallo
+	 * @return centroide piu vicino
+	 */
+	private int tuttiICentroidi(int i, double[] punto, Accumulatore accumulatore)
+	{
+		int a = 0;
+		double primoQ = Double.POSITIVE_INFINITY, secondoQ = Double.POSITIVE_INFINITY;
+		for(int c=0; c<k; c++)
+		{
+			double dq = distanzaQuadrata(punto, c, accumulatore);
+			if(dq < primoQ)
+			{
+				secondoQ = primoQ;
+				primoQ = dq;
+				a = c;
+			}
+			else if(dq < secondoQ)
+				secondoQ = dq;
+		}
+		superiori[i] = Math.sqrt(primoQ);
+		inferiori[i] = Math.sqrt(secondoQ);
+		return a;
+	}
+}
@@ -0,0 +1,163 @@
+package it.giuseppeaccardo.datamining.model;
+
+import it.giuseppeaccardo.datamining.model.RisultatoKmeans.CriterioArresto;
+
+/**
+ * <h1>K-Means Lloyd!</h1>
+ * Processo iterativo del K-Means classico (algoritmo di Lloyd): ad ogni iterazione tutti i record sono assegnati al
+ * centroide piu vicino e i centroidi sono ricalcolati come media dei loro record. L'iterazione è "fusa": l'assegnazione
+ * parallela accumula nello stesso passaggio le somme delle features e l'inerzia, quindi ogni record è letto una sola
+ * volta. Il compito di assegnazione, i centroidi e il buffer dei centroidi precedenti sono riutilizzati, quindi
+ * un'iterazione non alloca memoria.
+ * <br><br>
+ * L'algoritmo si ferma quando nessun record cambia cluster oppure quando scatta uno dei criteri di OpzioniKmeans; il
+ * risultato indica quale criterio lo ha fermato. Se l'algoritmo è fermato prima della convergenza, i centroidi
+ * restituiti sono le ultime medie calcolate e un passaggio finale li riassegna ai record (come in IndiceKdTree):
+ * etichette, conteggi, inerzia e centroidi del risultato sono sempre coerenti tra loro. Se richieste, le statistiche dei
+ * cluster sono accumulate da ogni assegnazione (pochi confronti e somme per record, senza radici) e il risultato porta
+ * quelle dell'ultima, anch'esse riferite ai centroidi restituiti. L'istanza non ha stato condiviso: piu esecuzioni
+ * possono girare contemporaneamente sullo stesso Dataset (in sola lettura), ognuna con i propri centroidi ed etichette.
+ * @author Giuseppe Accardo
+ * @version 1.0
+ * @since   14-02-2017
+ * @see DataMining
+ * @see OpzioniKmeans
+ * @see RisultatoKmeans
+ * @see TaskAssegnazione
+ */
+public class KmeansLloyd
+{
+	/** Criteri di arresto **/
+	private final OpzioniKmeans opzioni;
+
+	/**
+	 * Costruttore del K-Means che si ferma solo alla convergenza
+	 */
+	public KmeansLloyd()
+	{
+		this(new OpzioniKmeans());
+	}
+
+	/**
+	 * Costruttore del K-Means con i criteri di arresto dati
+	 * @param opzioni criteri di arresto
+	 */
+	public KmeansLloyd(OpzioniKmeans opzioni)
+	{
+		this.opzioni = opzioni;
+	}
+
+	/**
+	 * Esegue il K-Means partendo dai centroidi dati
+	 * @param dataset dataset da clusterizzare
+	 * @param centroidi centroidi iniziali, aggiornati sul posto fino ai centroidi finali (quelli a cui sono assegnate le
+	 * etichette)
+	 * @param etichette array (lungo quanto i record) in cui scrivere il cluster di ogni record
+	 * @return esito dell'esecuzione
+	 * @throws ArithmeticException eccezione lanciata nel caso in cui l'algoritmo non converga (es. un cluster vuoto)
+	 */
+	public RisultatoKmeans esegui(Dataset dataset, double[][] centroidi, int[] etichette) throws ArithmeticException
+	{
+		long avvio = System.nanoTime();
+		/* Le opzioni sono lette una sola volta: possono essere modificate per le esecuzioni successive */
+		double tolleranza = opzioni.getTolleranza();
+		double sogliaInerzia = opzioni.getSogliaInerzia();
+		int maxIterazioni = opzioni.getMaxIterazioni();
+		long tempoMassimo = opzioni.getTempoMassimo();
+		boolean statistiche = opzioni.isStatistiche();
+
+		int numRecord = dataset.getNumRecord();
+		int k = centroidi.length;
+		int d = dataset.getFeatureUsate().size();
+		/* Buffer dei centroidi dell'iterazione precedente */
+		double[] precedenti = new double[k * d];
+		TaskAssegnazione assegnazione = new TaskAssegnazione(dataset, centroidi, etichette, 0, numRecord,
+															 TaskAssegnazione.soglia(numRecord), true,
+															 statistiche);
+		CriterioArresto criterio = null;
+		int iterazione = 0;
+		double inerziaPrecedente = Double.POSITIVE_INFINITY;
+		while(criterio == null)
+		{
+			for(int j=0; j<k; j++)
+				System.arraycopy(centroidi[j], 0, precedenti, j * d, d);
+
+			/* Assegna i record ai centroidi piu vicini accumulando somme, inerzia e, se richieste, statistiche */
+			assegnazione.ripristina();
+			PoolCalcolo.get().invoke(assegnazione);
+			aggiornaCentroidi(centroidi, assegnazione.getConteggi(), assegnazione.getSomme());
+			iterazione++;
+
+			double inerzia = assegnazione.getInerzia();
+			double spostamento = spostamentoMassimo(centroidi, precedenti);
+			/* Nessun record ha cambiato cluster (dalla seconda iterazione, perchè la prima confronta con le etichette
+			 * di un'esecuzione precedente) o i centroidi non si sono spostati */
+			if(spostamento == 0 || (iterazione > 1 && assegnazione.getCambiati() == 0))
+				criterio = CriterioArresto.CONVERGENZA;
+			else if(tolleranza > 0 && spostamento <= tolleranza * inerzia / numRecord)
+				criterio = CriterioArresto.TOLLERANZA;
+			else if(sogliaInerzia > 0 && iterazione > 1 && inerziaPrecedente - inerzia <= sogliaInerzia * inerziaPrecedente)
+				criterio = CriterioArresto.INERZIA;
+			else if(iterazione >= maxIterazioni)
+				criterio = CriterioArresto.MAX_ITERAZIONI;
+			else if((System.nanoTime() - avvio) / 1000000 >= tempoMassimo)
+				criterio = CriterioArresto.TEMPO;
+			inerziaPrecedente = inerzia;
+		}
+		/* Fermato prima della convergenza: le etichette si riferiscono ai centroidi precedenti l'ultimo ricalcolo,
+		 * quindi un passaggio finale assegna i record ai centroidi restituiti */
+		if(criterio != CriterioArresto.CONVERGENZA)
+		{
+			assegnazione.ripristina();
+			PoolCalcolo.get().invoke(assegnazione);
+			inerziaPrecedente = assegnazione.getInerzia();
+		}
+		/* Le statistiche dell'ultima assegnazione si riferiscono ai centroidi restituiti */
+		return new RisultatoKmeans(iterazione, criterio, inerziaPrecedente, assegnazione.getConteggi().clone(),
+								   (System.nanoTime() - avvio) / 1000000, assegnazione.getStatistiche(centroidi));
+	}
+
+	/**
+	 * Calcola i nuovi centroidi come media delle features dei record assegnati ad ogni cluster, scrivendoli sul posto.
+	 * Un cluster vuoto ottiene un centroide indefinito (NaN) che sarà rilevato dal calcolo dello spostamento.
+	 * @param centroidi centroidi da aggiornare
+	 * @param conteggi numero di record per cluster
+	 * @param somme somme delle features per cluster (cluster j, feature f in posizione j*d+f)
+	 */
+	private static void aggiornaCentroidi(double[][] centroidi, int[] conteggi, double[] somme)
+	{
+		for(int j=0; j<centroidi.length; j++)
+		{
+			double[] centroide = centroidi[j];
+			int d = centroide.length;
+			for(int f=0; f<d; f++)
+				centroide[f] = somme[j * d + f] / conteggi[j];
+		}
+	}
+
+	/**
+	 * Calcola lo spostamento massimo (al quadrato) dei centroidi rispetto all'iterazione precedente
+	 * @param centroidi centroidi attuali
+	 * @param precedenti centroidi dell'iterazione precedente (cluster j, feature f in posizione j*d+f)
+	 * @return spostamento massimo al quadrato
+	 * @throws ArithmeticException eccezione lanciata nel caso in cui l'algoritmo non converga
+	 */
+	private static double spostamentoMassimo(double[][] centroidi, double[] precedenti) throws ArithmeticException
+	{
+		double massimo = 0, totale = 0;
+		for(int j=0; j<centroidi.length; j++)
+		{
+			double[] centroide = centroidi[j];
+			int base = j * centroide.length;
+			double quadrato = 0;
+			for(int f=0; f<centroide.length; f++)
+				quadrato += (centroide[f] - precedenti[base + f]) * (centroide[f] - precedenti[base + f]);
+			massimo = Math.max(massimo, quadrato);
+			totale += Math.sqrt(quadrato);
+		}
+		/* Se la distanza presenta un valore indefinibile, significa che l'algoritmo sta divergendo */
+		if(Double.isInfinite(totale) || Double.isNaN(totale))
+			throw new ArithmeticException("Distanza tra cluster: " + totale);
+		return massimo;
+	}
+}
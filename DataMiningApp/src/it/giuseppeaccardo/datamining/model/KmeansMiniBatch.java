@@ -0,0 +1,156 @@
+package it.giuseppeaccardo.datamining.model;
+
+import java.util.Random;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * <h1>K-Means Mini-Batch!</h1>
+ * Variante del K-Means per dataset molto grandi, in cui anche un solo passaggio completo sui record è costoso. Invece di
+ * assegnare tutti i record ad ogni iterazione, ad ogni passo si estrae a caso un piccolo gruppo (batch) di record, li si
+ * assegna ai centroidi piu vicini e si sposta ogni centroide verso i suoi record con un tasso di apprendimento 1/v(c),
+ * dove v(c) è il numero di record assegnati fino a quel momento al centroide: i centroidi visti molte volte si muovono
+ * sempre meno, e ogni centroide converge alla media dei record che ha ricevuto.
+ * <br><br>
+ * L'assegnazione del batch è eseguita in parallelo dal pool Fork/Join, l'aggiornamento dei centroidi (pochi record) da un
+ * solo thread nell'ordine del batch, quindi lo stesso seme produce lo stesso risultato. Al termine del numero di passi
+ * stabilito un unico passaggio completo assegna tutti i record ai centroidi finali: il costo è quello di un'iterazione
+ * del K-Means classico piu i batch, invece di un passaggio completo per ogni iterazione. Il risultato è un'approssimazione
+ * del K-Means classico. Il passaggio finale accumula anche le statistiche dei cluster.
+ * @author Giuseppe Accardo
+ * @version 1.0
+ * @since   14-02-2017
+ * @see DataMining
+ * @see TaskAssegnazione
+ */
+public class KmeansMiniBatch
+{
+	/** Record per batch **/
+	private final int dimensioneBatch;
+	/** Numero di batch da elaborare **/
+	private final int iterazioni;
+	/** Seme per l'estrazione dei batch **/
+	private final long seme;
+	/** Numero di record di ogni cluster nell'assegnazione finale **/
+	private int[] conteggi;
+	/** Statistiche dei cluster nell'assegnazione finale **/
+	private StatisticheCluster statistiche;
+
+	/**
+	 * Costruttore che configura il K-Means mini-batch
+	 * @param dimensioneBatch record estratti ad ogni passo
+	 * @param iterazioni numero di passi (batch) da eseguire
+	 * @param seme seme per l'estrazione dei batch
+	 */
+	public KmeansMiniBatch(int dimensioneBatch, int iterazioni, long seme)
+	{
+		if(dimensioneBatch < 1 || iterazioni < 0)
+			throw new IllegalArgumentException("Batch di " + dimensioneBatch + " record per " + iterazioni + " iterazioni");
+		this.dimensioneBatch = dimensioneBatch;
+		this.iterazioni = iterazioni;
+		this.seme = seme;
+	}
+
+	/**
+	 * Esegue il K-Means mini-batch partendo dai centroidi dati e assegna infine tutti i record
+	 * @param dataset dataset da clusterizzare
+	 * @param centroidi centroidi iniziali, sovrascritti con i centroidi finali
+	 * @param etichette array (lungo quanto i record) in cui scrivere il cluster di ogni record
+	 */
+	public void esegui(Dataset dataset, double[][] centroidi, int[] etichette)
+	{
+		int n = dataset.getNumRecord();
+		int k = centroidi.length;
+		int d = dataset.getFeatureUsate().size();
+		Random random = new Random(seme);
+		int[] batch = new int[dimensioneBatch];
+		int[] vicini = new int[dimensioneBatch];
+		double[] punti = new double[dimensioneBatch * d];
+		long[] visti = new long[k];
+		for(int iterazione=0; iterazione<iterazioni; iterazione++)
+		{
+			for(int j=0; j<dimensioneBatch; j++)
+				batch[j] = random.nextInt(n);
+			PoolCalcolo.get().invoke(new TaskBatch(dataset, centroidi, batch, punti, vicini, 0, dimensioneBatch));
+			/* Sposta ogni centroide verso i suoi record con tasso 1/v(c) */
+			for(int j=0; j<dimensioneBatch; j++)
+			{
+				int c = vicini[j];
+				double tasso = 1.0 / ++visti[c];
+				double[] centroide = centroidi[c];
+				for(int f=0; f<d; f++)
+					centroide[f] += tasso * (punti[j * d + f] - centroide[f]);
+			}
+		}
+		/* Un solo passaggio completo per le etichette finali */
+		TaskAssegnazione assegnazione = new TaskAssegnazione(dataset, centroidi, etichette, 0, n, TaskAssegnazione.soglia(n),
+															 false, true);
+		PoolCalcolo.get().invoke(assegnazione);
+		conteggi = assegnazione.getConteggi();
+		statistiche = assegnazione.getStatistiche(centroidi);
+	}
+
+	/**
+	 * Ottieni il numero di record di ogni cluster nell'assegnazione finale
+	 * @return conteggi per cluster
+	 */
+	public int[] getConteggi()
+	{
+		return conteggi;
+	}
+
+	/**
+	 * Ottieni le statistiche dei cluster nell'assegnazione finale (rispetto ai centroidi finali, che non sono
+	 * ricalcolati come media dei record)
+	 * @return statistiche dei cluster
+	 */
+	public StatisticheCluster getStatistiche()
+	{
+		return statistiche;
+	}
+
+	/**
+	 * Compito Fork/Join che legge i record di una porzione del batch e ne trova il centroide piu vicino
+	 */
+	@SuppressWarnings("serial")
+	private static final class TaskBatch extends RecursiveAction
+	{
+		/** Record del batch sotto i quali non si divide piu **/
+		private static final int SOGLIA = 256;
+		private final Dataset dataset;
+		private final double[][] centroidi;
+		private final int[] batch, vicini;
+		private final double[] punti;
+		private final int inizio, fine;
+
+		TaskBatch(Dataset dataset, double[][] centroidi, int[] batch, double[] punti, int[] vicini, int inizio, int fine)
+		{
+			this.dataset = dataset;
+			this.centroidi = centroidi;
+			this.batch = batch;
+			this.punti = punti;
+			this.vicini = vicini;
+			this.inizio = inizio;
+			this.fine = fine;
+		}
+
+		@Override
+		protected void compute()
+		{
+			if(fine - inizio > SOGLIA)
+			{
+				int meta = (inizio + fine) >>> 1;
+				invokeAll(new TaskBatch(dataset, centroidi, batch, punti, vicini, inizio, meta),
+						  new TaskBatch(dataset, centroidi, batch, punti, vicini, meta, fine));
+				return;
+			}
+			int d = dataset.getFeatureUsate().size();
+			double[] punto = new double[d];
+			for(int j=inizio; j<fine; j++)
+			{
+				dataset.getRecord(batch[j], punto);
+				System.arraycopy(punto, 0, punti, j * d, d);
+				vicini[j] = KernelDistanza.piuVicino(punto, centroidi);
+			}
+		}
+	}
+}
@@ -0,0 +1,155 @@
+package it.giuseppeaccardo.datamining.model;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * <h1>K-Means Multi Avvio!</h1>
+ * Il risultato del K-Means dipende dai centroidi iniziali: una sola esecuzione può fermarsi in un minimo locale
+ * scadente. Qui il K-Means classico viene eseguito piu volte (nInit avvii) con centroidi iniziali scelti da semi diversi,
+ * e si conserva l'esecuzione con l'inerzia (somma dei quadrati delle distanze dei record dal proprio centroide) minore.
+ * <br><br>
+ * Gli avvii sono compiti indipendenti eseguiti contemporaneamente dal pool Fork/Join, che condividono solo il Dataset in
+ * sola lettura: ogni avvio ha i propri centroidi, etichette e accumulatori, e nessuno stato statico è modificato. I semi
+ * degli avvii sono derivati dal seme dato e la divisione in blocchi dei passaggi paralleli dipende solo dal numero di
+ * record (TaskAssegnazione.soglia), quindi lo stesso seme produce lo stesso risultato qualunque sia il numero di
+ * core. Gli avvii in cui un cluster resta vuoto (ArithmeticException) sono scartati.
+ * @author Giuseppe Accardo
+ * @version 1.0
+ * @since   14-02-2017
+ * @see DataMining
+ * @see KmeansLloyd
+ * @see InizializzazioneKmeans
+ */
+public class KmeansMultiAvvio
+{
+	/** Numero di avvii **/
+	private final int nInit;
+	/** Criteri di arresto di ogni avvio **/
+	private final OpzioniKmeans opzioni;
+	/** Centroidi ed etichette dell'avvio migliore **/
+	private double[][] centroidi;
+	private int[] etichette;
+
+	/**
+	 * Costruttore del K-Means con piu avvii
+	 * @param nInit numero di avvii (almeno 1)
+	 * @param opzioni criteri di arresto di ogni avvio
+	 */
+	public KmeansMultiAvvio(int nInit, OpzioniKmeans opzioni)
+	{
+		if(nInit < 1)
+			throw new IllegalArgumentException("Numero di avvii: " + nInit);
+		this.nInit = nInit;
+		this.opzioni = opzioni;
+	}
+
+	/**
+	 * Esegue gli avvii in parallelo e conserva quello con l'inerzia minore
+	 * @param dataset dataset da clusterizzare (in sola lettura)
+	 * @param k numero di cluster
+	 * @param seme seme da cui sono derivati i semi degli avvii
+	 * @return esito dell'avvio migliore
+	 * @throws ArithmeticException eccezione lanciata se nessun avvio converge
+	 */
+	public RisultatoKmeans esegui(Dataset dataset, int k, long seme) throws ArithmeticException
+	{
+		SplittableRandom random = new SplittableRandom(seme);
+		TaskAvvio[] avvii = new TaskAvvio[nInit];
+		for(int r=0; r<nInit; r++)
+			avvii[r] = new TaskAvvio(dataset, k, random.nextLong(), opzioni);
+		PoolCalcolo.get().invoke(new TaskAvvii(avvii));
+
+		/* A parità di inerzia vince il primo avvio, quindi la scelta non dipende dall'ordine di completamento */
+		TaskAvvio migliore = null;
+		for(TaskAvvio avvio : avvii)
+			if(avvio.risultato != null && (migliore == null || avvio.risultato.getInerzia() < migliore.risultato.getInerzia()))
+				migliore = avvio;
+		if(migliore == null)
+			throw new ArithmeticException("Nessuno dei " + nInit + " avvii converge");
+		centroidi = migliore.centroidi;
+		etichette = migliore.etichette;
+		return migliore.risultato;
+	}
+
+	/**
+	 * Ottieni i centroidi finali dell'avvio migliore
+	 * @return centroidi
+	 */
+	public double[][] getCentroidi()
+	{
+		return centroidi;
+	}
+
+	/**
+	 * Ottieni il cluster di ogni record nell'avvio migliore
+	 * @return etichette dei record
+	 */
+	public int[] getEtichette()
+	{
+		return etichette;
+	}
+
+	/**
+	 * Compito Fork/Join che avvia tutti gli avvii contemporaneamente
+	 */
+	@SuppressWarnings("serial")
+	private static final class TaskAvvii extends RecursiveTask<Void>
+	{
+		private final TaskAvvio[] avvii;
+
+		TaskAvvii(TaskAvvio[] avvii)
+		{
+			this.avvii = avvii;
+		}
+
+		@Override
+		protected Void compute()
+		{
+			invokeAll(avvii);
+			return null;
+		}
+	}
+
+	/**
+	 * Compito Fork/Join di un singolo avvio: sceglie i centroidi iniziali dal proprio seme ed esegue il K-Means.
+	 * Tutto lo stato modificato appartiene al compito.
+	 */
+	@SuppressWarnings("serial")
+	private static final class TaskAvvio extends RecursiveTask<Void>
+	{
+		private final Dataset dataset;
+		private final int k;
+		private final long seme;
+		private final OpzioniKmeans opzioni;
+		private double[][] centroidi;
+		private int[] etichette;
+		/** Esito dell'avvio, null se non converge **/
+		private RisultatoKmeans risultato;
+
+		TaskAvvio(Dataset dataset, int k, long seme, OpzioniKmeans opzioni)
+		{
+			this.dataset = dataset;
+			this.k = k;
+			this.seme = seme;
+			this.opzioni = opzioni;
+		}
+
+		@Override
+		protected Void compute()
+		{
+			centroidi = InizializzazioneKmeans.scegli(dataset, k, seme);
+			etichette = new int[dataset.getNumRecord()];
+			try
+			{
+				risultato = new KmeansLloyd(opzioni).esegui(dataset, centroidi, etichette);
+			}
+			catch(ArithmeticException e)
+			{	/* Avvio divergente: libera la memoria e lascia il risultato vuoto */
+				centroidi = null;
+				etichette = null;
+			}
+			return null;
+		}
+	}
+}
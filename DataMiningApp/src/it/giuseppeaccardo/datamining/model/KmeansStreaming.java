@@ -0,0 +1,185 @@
+package it.giuseppeaccardo.datamining.model;
+
+import java.util.Iterator;
+
+/**
+ * <h1>K-Means Streaming!</h1>
+ * K-Means "online" per flussi di record senza fine (es. sensori): i record arrivano uno alla volta o a piccoli gruppi,
+ * da un Iterator o inviati direttamente con aggiungi(), e non vengono mai conservati, quindi non serve un Dataset in
+ * memoria. Ogni record è assegnato al centroide piu vicino, che viene spostato verso il record con tasso 1/v(c) (v(c)
+ * record ricevuti dal centroide): il centroide resta la media dei suoi record, come nel K-Means di MacQueen.
+ * <br><br>
+ * Per i flussi i cui dati cambiano nel tempo si può fissare un tasso minimo: il centroide segue allora i record piu
+ * recenti invece della media di tutta la storia. I primi k record distinti diventano i centroidi iniziali.
+ * <br><br>
+ * I metodi sono sincronizzati: un thread può inviare i record mentre altri leggono in qualunque momento i centroidi
+ * correnti (copie), il numero di record per cluster o il cluster di un record.
+ * @author Giuseppe Accardo
+ * @version 1.0
+ * @since   14-02-2017
+ * @see DataMining
+ * @see KmeansMiniBatch
+ */
+public class KmeansStreaming
+{
+	/** Numero di cluster e di features **/
+	private final int k, d;
+	/** Tasso di apprendimento minimo (0 = media di tutti i record) **/
+	private final double tassoMinimo;
+	/** Centroidi correnti (solo i primi "attivi" sono validi durante l'avvio) **/
+	private final double[][] centroidi;
+	/** Record ricevuti da ogni cluster **/
+	private final long[] conteggi;
+	/** Centroidi già inizializzati **/
+	private int attivi;
+	/** Record ricevuti in totale **/
+	private long recordVisti;
+
+	/**
+	 * Costruttore del K-Means streaming in cui ogni centroide è la media di tutti i suoi record
+	 * @param k numero di cluster
+	 * @param numFeature numero di features di ogni record
+	 */
+	public KmeansStreaming(int k, int numFeature)
+	{
+		this(k, numFeature, 0);
+	}
+
+	/**
+	 * Costruttore del K-Means streaming con tasso di apprendimento minimo, per seguire flussi che cambiano nel tempo
+	 * @param k numero di cluster
+	 * @param numFeature numero di features di ogni record
+	 * @param tassoMinimo tasso minimo in [0, 1): piu è alto, piu i centroidi seguono i record recenti
+	 */
+	public KmeansStreaming(int k, int numFeature, double tassoMinimo)
+	{
+		if(k < 1 || numFeature < 1 || tassoMinimo < 0 || tassoMinimo >= 1)
+			throw new IllegalArgumentException("k=" + k + ", features=" + numFeature + ", tasso minimo=" + tassoMinimo);
+		this.k = k;
+		this.d = numFeature;
+		this.tassoMinimo = tassoMinimo;
+		this.centroidi = new double[k][d];
+		this.conteggi = new long[k];
+	}
+
+	/**
+	 * Aggiunge un record al clustering
+	 * @param record features del record
+	 * @return cluster a cui è stato assegnato il record
+	 */
+	public synchronized int aggiungi(double[] record)
+	{
+		if(record.length != d)
+			throw new IllegalArgumentException("Record di " + record.length + " features invece di " + d);
+		recordVisti++;
+		/* Avvio: ogni record distinto diventa un nuovo centroide finchè non sono k */
+		if(attivi < k)
+		{
+			for(int c=0; c<attivi; c++)
+				if(KernelDistanza.distanzaQuadrata(record, centroidi[c]) == 0)
+				{
+					conteggi[c]++;
+					return c;
+				}
+			System.arraycopy(record, 0, centroidi[attivi], 0, d);
+			conteggi[attivi] = 1;
+			return attivi++;
+		}
+		int c = KernelDistanza.piuVicino(record, centroidi);
+		double tasso = Math.max(1.0 / ++conteggi[c], tassoMinimo);
+		double[] centroide = centroidi[c];
+		for(int f=0; f<d; f++)
+			centroide[f] += tasso * (record[f] - centroide[f]);
+		return c;
+	}
+
+	/**
+	 * Aggiunge un piccolo gruppo di record, nell'ordine dato
+	 * @param records record da aggiungere
+	 */
+	public synchronized void aggiungi(double[][] records)
+	{
+		for(double[] record : records)
+			aggiungi(record);
+	}
+
+	/**
+	 * Consuma i record di una sorgente finchè questa ne fornisce (per un flusso infinito non termina, va eseguito
+	 * in un thread dedicato). Il lock è preso record per record, quindi le letture non restano bloccate.
+	 * @param sorgente sorgente dei record
+	 * @return numero di record consumati
+	 */
+	public long consuma(Iterator<double[]> sorgente)
+	{
+		long consumati = 0;
+		while(sorgente.hasNext() && !Thread.currentThread().isInterrupted())
+		{
+			aggiungi(sorgente.next());
+			consumati++;
+		}
+		return consumati;
+	}
+
+	/**
+	 * Cluster a cui appartiene un record secondo i centroidi correnti (il record non viene aggiunto)
+	 * @param record features del record
+	 * @return indice del cluster, -1 se non è ancora arrivato nessun record
+	 */
+	public synchronized int assegna(double[] record)
+	{
+		if(attivi == 0)
+			return -1;
+		if(attivi == k)
+			return KernelDistanza.piuVicino(record, centroidi);
+		int migliore = 0;
+		for(int c=1; c<attivi; c++)
+			if(KernelDistanza.distanzaQuadrata(record, centroidi[c]) < KernelDistanza.distanzaQuadrata(record, centroidi[migliore]))
+				migliore = c;
+		return migliore;
+	}
+
+	/**
+	 * Ottieni una copia dei centroidi correnti (durante l'avvio solo quelli già inizializzati)
+	 * @return centroidi
+	 */
+	public synchronized double[][] getCentroidi()
+	{
+		double[][] copia = new double[attivi][];
+		for(int c=0; c<attivi; c++)
+			copia[c] = centroidi[c].clone();
+		return copia;
+	}
+
+	/**
+	 * Ottieni il numero di record ricevuti da ogni cluster
+	 * @return conteggi per cluster
+	 */
+	public synchronized long[] getConteggi()
+	{
+		return conteggi.clone();
+	}
+
+	/**
+	 * Ottieni il numero di record ricevuti in totale
+	 * @return record ricevuti
+	 */
+	public synchronized long getRecordVisti()
+	{
+		return recordVisti;
+	}
+
+	/**
+	 * Crea dei Cluster con i centroidi correnti (senza indici, perchè i record non sono conservati)
+	 * @return cluster correnti
+	 */
+	public synchronized Cluster[] getClusters()
+	{
+		Cluster[] clusters = new Cluster[attivi];
+		for(int c=0; c<attivi; c++)
+		{
+			clusters[c] = new Cluster(c);
+			clusters[c].setCentroide(centroidi[c].clone());
+		}
+		return clusters;
+	}
+}
@@ -0,0 +1,247 @@
+package it.giuseppeaccardo.datamining.model;
+
+/**
+ * <h1>K-Means Yinyang!</h1>
+ * Variante del K-Means per un numero di cluster molto grande (centinaia o migliaia, es. quantizzazione vettoriale), in cui
+ * sia il ciclo classico su tutti i centroidi sia i k limiti per record di KmeansElkan non scalano. I centroidi sono divisi
+ * in t gruppi (circa k/10) raggruppandoli con qualche iterazione di K-Means sui centroidi iniziali; per ogni record si
+ * mantengono un limite superiore u(x) e un limite inferiore per ogni <b>gruppo</b>, alla distanza dal centroide piu
+ * vicino del gruppo (escluso quello del record). I filtri sono applicati a tre livelli:
+ * <ul>
+ * <li>globale: se u(x) è minore di tutti i limiti dei gruppi il record non cambia cluster;</li>
+ * <li>di gruppo: i gruppi il cui limite supera u(x) sono saltati per intero;</li>
+ * <li>locale: nei gruppi rimasti, un centroide è saltato se il vecchio limite del gruppo meno il suo spostamento
+ * supera la distanza migliore trovata.</li>
+ * </ul>
+ * Quando i centroidi si spostano, il limite di un gruppo diminuisce dello spostamento massimo dei suoi centroidi. Il
+ * centroide piu vicino è scelto come nel K-Means classico (quadrati, a parità l'indice minore), quindi i cluster ottenuti
+ * sono gli stessi. I limiti dei gruppi occupano n·t double: oltre la dimensione massima di un array l'esecuzione è
+ * rifiutata con IllegalArgumentException.
+ * @author Giuseppe Accardo
+ * @version 1.0
+ * @since   14-02-2017
+ * @see AlgoritmoKmeans
+ * @see KmeansElkan
+ * @see DataMining
+ */
+public class KmeansYinyang extends AlgoritmoKmeans
+{
+	/** Iterazioni del K-Means usato per raggruppare i centroidi **/
+	private static final int ITERAZIONI_GRUPPI = 5;
+	/** Numero di gruppi **/
+	private int t;
+	/** Gruppo di ogni centroide **/
+	private int[] gruppo;
+	/** Centroidi di ogni gruppo **/
+	private int[][] membri;
+	/** Spostamento massimo dei centroidi di ogni gruppo **/
+	private double[] spostamentiGruppi;
+	/** Limite superiore della distanza di ogni record dal proprio centroide **/
+	private double[] superiori;
+	/** Limite inferiore della distanza del record i dai centroidi del gruppo g, in posizione i*t+g **/
+	private double[] inferiori;
+
+	@Override
+	protected void inizializza()
+	{
+		raggruppaCentroidi();
+		spostamentiGruppi = new double[t];
+		superiori = new double[n];
+		inferiori = new double[dimensionePerRecord(t)];
+	}
+
+	/**
+	 * Divide i centroidi iniziali in gruppi con qualche iterazione di K-Means sui centroidi stessi. I gruppi rimasti
+	 * vuoti vengono eliminati.
+	 */
+	private void raggruppaCentroidi()
+	{
+		int richiesti = Math.max(1, k / 10);
+		double[][] centri = new double[richiesti][];
+		for(int g=0; g<richiesti; g++)
+			centri[g] = centroidi[(int)((long)g * k / richiesti)].clone();
+		gruppo = new int[k];
+		int[] dimensioni = new int[richiesti];
+		for(int iterazione=0; iterazione<ITERAZIONI_GRUPPI; iterazione++)
+		{
+			double[][] somme = new double[richiesti][d];
+			java.util.Arrays.fill(dimensioni, 0);
+			for(int c=0; c<k; c++)
+			{
+				int g = KernelDistanza.piuVicino(centroidi[c], centri);
+				gruppo[c] = g;
+				dimensioni[g]++;
+				for(int f=0; f<d; f++)
+					somme[g][f] += centroidi[c][f];
+			}
+			for(int g=0; g<richiesti; g++)
+				if(dimensioni[g] > 0)
+					for(int f=0; f<d; f++)
+						centri[g][f] = somme[g][f] / dimensioni[g];
+		}
+		/* Compatta i gruppi eliminando quelli vuoti */
+		int[] nuovoIndice = new int[richiesti];
+		t = 0;
+		for(int g=0; g<richiesti; g++)
+			nuovoIndice[g] = dimensioni[g] > 0 ? t++ : -1;
+		membri = new int[t][];
+		for(int g=0; g<richiesti; g++)
+			if(dimensioni[g] > 0)
+				membri[nuovoIndice[g]] = new int[dimensioni[g]];
+		int[] riempiti = new int[t];
+		for(int c=0; c<k; c++)
+		{
+			int g = nuovoIndice[gruppo[c]];
+			gruppo[c] = g;
+			membri[g][riempiti[g]++] = c;
+		}
+	}
+
+	@Override
+	protected void preparaIterazione(boolean primo)
+	{
+		if(primo)
+			return;
+		for(int g=0; g<t; g++)
+		{
+			spostamentiGruppi[g] = 0;
+			for(int c : membri[g])
+				spostamentiGruppi[g] = Math.max(spostamentiGruppi[g], spostamenti[c]);
+		}
+	}
+
+	@Override
+	protected void assegnaIntervallo(int inizio, int fine, boolean primo, Accumulatore accumulatore)
+	{
+		double[] punto = new double[d];
+		double[] vecchiLimiti = new double[t];
+		for(int i=inizio; i<fine; i++)
+		{
+			dataset.getRecord(i, punto);
+			if(primo)
+			{
+				etichette[i] = tuttiICentroidi(i, punto, accumulatore);
+				accumulatore.cambiato();
+			}
+			else
+			{
+				int precedente = etichette[i];
+				int nuovo = assegnaConFiltri(i, punto, precedente, vecchiLimiti, accumulatore);
+				if(nuovo != precedente)
+				{
+					etichette[i] = nuovo;
+					accumulatore.cambiato();
+				}
+			}
+			accumulatore.aggiungi(etichette[i], punto);
+		}
+	}
+
+	/**
+	 * Calcola le distanze del record da tutti i centroidi e ne ricostruisce i limiti (primo passaggio)
+	 * @param i indice del record
+	 * @param punto features del record
+	 * @param accumulatore accumulatore dell'intervallo
+	 * @return centroide piu vicino
+	 */
+	private int tuttiICentroidi(int i, double[] punto, Accumulatore accumulatore)
+	{
+		int base = i * t;
+		int a = -1;
+		double aq = Double.POSITIVE_INFINITY;
+		for(int g=0; g<t; g++)
+			inferiori[base + g] = Double.POSITIVE_INFINITY;
+		for(int c=0; c<k; c++)
+		{
+			double dq = distanzaQuadrata(punto, c, accumulatore);
+			if(dq < aq)
+			{	/* Il vecchio migliore entra nel limite del proprio gruppo */
+				if(a >= 0)
+					inferiori[base + gruppo[a]] = Math.min(inferiori[base + gruppo[a]], Math.sqrt(aq));
+				a = c;
+				aq = dq;
+			}
+			else
+				inferiori[base + gruppo[c]] = Math.min(inferiori[base + gruppo[c]], Math.sqrt(dq));
+		}
+		superiori[i] = Math.sqrt(aq);
+		return a;
+	}
+
+	/**
+	 * Assegna il record applicando i filtri globale, di gruppo e locale
+	 * @param i indice del record
+	 * @param punto features del record
+	 * @param a0 centroide assegnato nel passaggio precedente
+	 * @param vecchiLimiti buffer per i limiti dei gruppi prima dell'aggiornamento
+	 * @param accumulatore accumulatore dell'intervallo
+	 * @return centroide piu vicino
+	 */
+	private int assegnaConFiltri(int i, double[] punto, int a0, double[] vecchiLimiti, Accumulatore accumulatore)
+	{
+		int base = i * t;
+		/* Aggiorna i limiti con gli spostamenti e calcola il limite globale */
+		double u = superiori[i] + spostamenti[a0];
+		double globale = Double.POSITIVE_INFINITY;
+		for(int g=0; g<t; g++)
+		{
+			vecchiLimiti[g] = inferiori[base + g];
+			inferiori[base + g] -= spostamentiGruppi[g];
+			globale = Math.min(globale, inferiori[base + g]);
+		}
+		superiori[i] = u;
+		/* Filtro globale, prima con il limite e poi con la distanza esatta */
+		if(u < globale)
+			return a0;
+		double uq = distanzaQuadrata(punto, a0, accumulatore);
+		double d0 = Math.sqrt(uq);
+		u = d0;
+		superiori[i] = u;
+		if(u < globale)
+			return a0;
+
+		int a = a0;
+		for(int g=0; g<t; g++)
+		{
+			/* Filtro di gruppo: nessun centroide del gruppo può essere piu vicino */
+			if(u < inferiori[base + g])
+				continue;
+			double limiteGruppo = Double.POSITIVE_INFINITY;
+			for(int c : membri[g])
+			{
+				if(c == a)
+					continue;
+				if(c == a0)
+				{	/* Il centroide precedente ha già la distanza esatta */
+					limiteGruppo = Math.min(limiteGruppo, d0);
+					continue;
+				}
+				/* Filtro locale sul singolo centroide */
+				double limiteLocale = vecchiLimiti[g] - spostamenti[c];
+				if(u < limiteLocale)
+				{
+					limiteGruppo = Math.min(limiteGruppo, limiteLocale);
+					continue;
+				}
+				double dq = distanzaQuadrata(punto, c, accumulatore);
+				double dc = Math.sqrt(dq);
+				/* A parità vince l'indice minore, come nel K-Means classico */
+				if(dq < uq || (dq == uq && c < a))
+				{	/* Il vecchio migliore entra nel limite del proprio gruppo */
+					if(gruppo[a] == g)
+						limiteGruppo = Math.min(limiteGruppo, u);
+					else
+						inferiori[base + gruppo[a]] = Math.min(inferiori[base + gruppo[a]], u);
+					a = c;
+					uq = dq;
+					u = dc;
+				}
+				else
+					limiteGruppo = Math.min(limiteGruppo, dc);
+			}
+			inferiori[base + g] = limiteGruppo;
+		}
+		superiori[i] = u;
+		return a;
+	}
+}
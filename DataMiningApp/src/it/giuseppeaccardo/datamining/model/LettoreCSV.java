@@ -0,0 +1,429 @@
+package it.giuseppeaccardo.datamining.model;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * <h1>Lettore CSV!</h1>
+ * Parser di file delimitati (come il file .data di Iris) che lavora direttamente sui byte letti in un ByteBuffer.
+ * A differenza di BufferedReader.readLine() + String.split() + Double.parseDouble(), non crea nessuna String per riga o per
+ * cella: i numeri sono convertiti direttamente dai byte e scritti nelle colonne del dataset. Le celle oltre il numero di
+ * colonne richieste (ad esempio il nome della classe in Iris) vengono saltate, le righe vuote ignorate.
+ * <br><br>
+ * La conversione veloce è esatta per i numeri con al piu 15 cifre significative ed esponente decimale entro 22 (caso
+ * tipico dei dataset). Negli altri casi (o per valori come "NaN") si ricade su Double.parseDouble, che lancia anche la
+ * NumberFormatException per le celle non numeriche.
+ * <br><br>
+ * Un lettore conserva dei buffer riutilizzabili, quindi non deve essere condiviso tra piu thread. Per i file grandi è
+ * disponibile anche una lettura parallela (caricaParallelo) in cui ogni thread usa un suo lettore su una porzione del file.
+ * @author Giuseppe Accardo
+ * @version 1.0
+ * @since   14-02-2017
+ * @see Dataset
+ * @see DatasetIris
+ */
+public class LettoreCSV
+{
+	/** Dimensione del buffer di lettura **/
+	private static final int DIMENSIONE_BUFFER = 1 << 18;
+	/** Potenze di 10 rappresentabili esattamente in un double **/
+	private static final double[] POTENZE_10 = {
+		1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+		1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+	/** Massimo numero di cifre significative convertibili esattamente **/
+	private static final int MAX_CIFRE_ESATTE = 15;
+	/** Dimensione minima (in byte) di una porzione letta in parallelo: sotto tale soglia non conviene dividere il file **/
+	private static final long DIMENSIONE_MINIMA_PORZIONE = 8L << 20;
+
+	/** Separatore delle celle **/
+	private final byte separatore;
+	/** Buffer in cui sono letti i byte del file **/
+	private final ByteBuffer buffer;
+	/** Byte della cella corrente **/
+	private byte[] campo;
+	/** Numero di byte della cella corrente **/
+	private int lunghezzaCampo;
+
+	/**
+	 * Costruttore di un lettore con separatore ','
+	 */
+	public LettoreCSV()
+	{
+		this(',');
+	}
+	/**
+	 * Costruttore di un lettore con il separatore indicato
+	 * @param separatore carattere (ASCII) che separa le celle
+	 */
+	public LettoreCSV(char separatore)
+	{
+		this.separatore = (byte) separatore;
+		this.buffer = ByteBuffer.allocate(DIMENSIONE_BUFFER);
+		this.campo = new byte[32];
+	}
+
+	/**
+	 * Legge un intero file aggiungendo i valori alle colonne
+	 * @param path nome del file
+	 * @param colonne colonne in cui aggiungere le prime colonne.length celle di ogni record
+	 * @return numero di record letti
+	 * @throws IOException errore durante la lettura (FileNotFoundException se il file non esiste)
+	 * @throws NumberFormatException cella non numerica o record incompleto
+	 */
+	public static int carica(String path, Colonna[] colonne) throws IOException
+	{
+		try(FileInputStream in = new FileInputStream(path); FileChannel canale = in.getChannel())
+		{
+			return new LettoreCSV().leggi(canale, 0, canale.size(), colonne);
+		}
+	}
+
+	/**
+	 * Legge un intero file dividendolo in porzioni allineate all'inizio di una riga. Ogni porzione è letta da un thread
+	 * del pool in colonne locali, che alla fine vengono accodate alle colonne di destinazione nell'ordine originale dei
+	 * record. I file piccoli sono letti da un solo thread.
+	 * @param path nome del file
+	 * @param colonne colonne in cui aggiungere le prime colonne.length celle di ogni record
+	 * @return numero di record letti
+	 * @throws IOException errore durante la lettura (FileNotFoundException se il file non esiste)
+	 * @throws NumberFormatException cella non numerica o record incompleto
+	 * @see PoolCalcolo
+	 */
+	public static int caricaParallelo(String path, Colonna[] colonne) throws IOException
+	{
+		try(FileInputStream in = new FileInputStream(path); FileChannel canale = in.getChannel())
+		{
+			long dimensione = canale.size();
+			int numPorzioni = (int) Math.min(PoolCalcolo.parallelismo(), dimensione / DIMENSIONE_MINIMA_PORZIONE);
+			if(numPorzioni <= 1)
+				return new LettoreCSV().leggi(canale, 0, dimensione, colonne);
+
+			/* Lancia la lettura delle porzioni */
+			long[] confini = confiniRighe(canale, dimensione, numPorzioni);
+			List<Future<Porzione>> letture = new ArrayList<Future<Porzione>>();
+			for(int p=0; p<numPorzioni; p++)
+				letture.add(PoolCalcolo.get().submit(new Porzione(canale, confini[p], confini[p+1], colonne.length)));
+
+			/* Attendi le porzioni nell'ordine del file e accodale */
+			List<Porzione> porzioni = new ArrayList<Porzione>();
+			int record = 0;
+			for(Future<Porzione> lettura : letture)
+			{
+				Porzione porzione = attendi(lettura);
+				porzioni.add(porzione);
+				record += porzione.record;
+			}
+			for(int j=0; j<colonne.length; j++)
+			{
+				if(colonne[j] instanceof ColonnaArray)
+					((ColonnaArray) colonne[j]).assicuraCapacita(colonne[j].size() + record);
+				for(Porzione porzione : porzioni)
+				{
+					accoda(colonne[j], porzione.colonne[j]);
+					porzione.colonne[j] = null; /* Libera la colonna locale appena accodata */
+				}
+			}
+			return record;
+		}
+	}
+
+	/**
+	 * Calcola le posizioni in cui dividere il file: ogni confine è spostato subito dopo il primo '\n' che segue la
+	 * posizione nominale, cosi che nessuna riga sia divisa tra due porzioni.
+	 * @param canale canale del file
+	 * @param dimensione dimensione del file
+	 * @param numPorzioni numero di porzioni
+	 * @return confini delle porzioni (numPorzioni + 1 posizioni)
+	 * @throws IOException errore durante la lettura
+	 */
+	private static long[] confiniRighe(FileChannel canale, long dimensione, int numPorzioni) throws IOException
+	{
+		long[] confini = new long[numPorzioni + 1];
+		ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+		confini[numPorzioni] = dimensione;
+		for(int p=1; p<numPorzioni; p++)
+		{
+			long posizione = Math.max(dimensione / numPorzioni * p, confini[p-1]);
+			long confine = dimensione;
+			while(posizione < dimensione && confine == dimensione)
+			{
+				buffer.clear();
+				int letti = canale.read(buffer, posizione);
+				if(letti <= 0)
+					break;
+				for(int i=0; i<letti; i++)
+					if(buffer.get(i) == '\n')
+					{
+						confine = posizione + i + 1;
+						break;
+					}
+				posizione += letti;
+			}
+			confini[p] = confine;
+		}
+		return confini;
+	}
+
+	/**
+	 * Accoda i valori di una colonna locale ad una colonna di destinazione
+	 * @param destinazione colonna del dataset
+	 * @param locale colonna letta da una porzione
+	 */
+	private static void accoda(Colonna destinazione, ColonnaArray locale)
+	{
+		if(destinazione instanceof ColonnaArray)
+			((ColonnaArray) destinazione).addAll(locale);
+		else
+			for(int i=0; i<locale.size(); i++)
+				destinazione.add(locale.get(i));
+	}
+
+	/**
+	 * Attende la lettura di una porzione riportando le eccezioni originali (IOException, NumberFormatException...)
+	 * @param lettura lettura in corso
+	 * @return porzione letta
+	 * @throws IOException errore durante la lettura o attesa interrotta
+	 */
+	private static Porzione attendi(Future<Porzione> lettura) throws IOException
+	{
+		try {
+			return lettura.get();
+		}
+		catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Caricamento interrotto");
+		}
+		catch(ExecutionException e) {
+			Throwable causa = e.getCause();
+			if(causa instanceof IOException)
+				throw (IOException) causa;
+			if(causa instanceof RuntimeException)
+				throw (RuntimeException) causa;
+			if(causa instanceof Error)
+				throw (Error) causa;
+			throw new IOException(causa);
+		}
+	}
+
+	/**
+	 * Legge i record contenuti tra due posizioni (in byte) del file. Le letture sono posizionali, quindi piu lettori
+	 * possono leggere contemporaneamente porzioni diverse dello stesso canale.
+	 * @param canale canale del file
+	 * @param inizio posizione del primo byte da leggere (inizio di una riga)
+	 * @param fine posizione successiva all'ultimo byte da leggere
+	 * @param colonne colonne in cui aggiungere le prime colonne.length celle di ogni record
+	 * @return numero di record letti
+	 * @throws IOException errore durante la lettura
+	 * @throws NumberFormatException cella non numerica o record incompleto
+	 */
+	public int leggi(FileChannel canale, long inizio, long fine, Colonna[] colonne) throws IOException
+	{
+		final byte[] dati = buffer.array();
+		int record = 0;
+		/* Indice della cella corrente nel record */
+		int colonna = 0;
+		boolean rigaVuota = true;
+		long posizione = inizio;
+		lunghezzaCampo = 0;
+
+		while(posizione < fine)
+		{
+			buffer.clear();
+			buffer.limit((int) Math.min(buffer.capacity(), fine - posizione));
+			int letti = canale.read(buffer, posizione);
+			if(letti <= 0)
+				break;
+			posizione += letti;
+
+			for(int p=0; p<letti; p++)
+			{
+				byte c = dati[p];
+				if(c == '\n' || c == '\r')
+				{
+					/* Fine riga: chiudi il record (\r\n produce una riga vuota che viene ignorata) */
+					if(!rigaVuota)
+					{
+						chiudiRecord(colonne, colonna);
+						record++;
+					}
+					colonna = 0;
+					rigaVuota = true;
+				}
+				else if(c == separatore)
+				{
+					if(colonna < colonne.length)
+						colonne[colonna].add(valoreCampo());
+					colonna++;
+					lunghezzaCampo = 0;
+					rigaVuota = false;
+				}
+				else
+				{
+					rigaVuota = false;
+					/* Le celle oltre quelle richieste non vengono nemmeno copiate */
+					if(colonna < colonne.length)
+						accumula(c);
+				}
+			}
+		}
+		/* Ultima riga senza terminatore */
+		if(!rigaVuota)
+		{
+			chiudiRecord(colonne, colonna);
+			record++;
+		}
+		return record;
+	}
+
+	/**
+	 * Porzione del file letta da un thread in colonne locali
+	 */
+	private static class Porzione implements Callable<Porzione>
+	{
+		private final FileChannel canale;
+		private final long inizio, fine;
+		/** Colonne locali della porzione **/
+		private final ColonnaArray[] colonne;
+		/** Numero di record letti **/
+		private int record;
+
+		Porzione(FileChannel canale, long inizio, long fine, int numColonne)
+		{
+			this.canale = canale;
+			this.inizio = inizio;
+			this.fine = fine;
+			this.colonne = new ColonnaArray[numColonne];
+			for(int j=0; j<numColonne; j++)
+				colonne[j] = new ColonnaArray();
+		}
+
+		@Override
+		public Porzione call() throws IOException
+		{
+			record = new LettoreCSV().leggi(canale, inizio, fine, colonne);
+			return this;
+		}
+	}
+
+	/**
+	 * Chiude il record corrente inserendo l'ultima cella e verificando che tutte le colonne siano state lette
+	 * @param colonne colonne del dataset
+	 * @param colonna indice della cella corrente
+	 * @throws NumberFormatException record con meno celle delle colonne richieste
+	 */
+	private void chiudiRecord(Colonna[] colonne, int colonna)
+	{
+		if(colonna < colonne.length)
+		{
+			colonne[colonna].add(valoreCampo());
+			colonna++;
+		}
+		lunghezzaCampo = 0;
+		if(colonna < colonne.length)
+			throw new NumberFormatException("Record incompleto: " + colonna + " celle su " + colonne.length);
+	}
+
+	/**
+	 * Aggiunge un byte alla cella corrente
+	 * @param c byte letto
+	 */
+	private void accumula(byte c)
+	{
+		if(lunghezzaCampo == campo.length)
+			campo = Arrays.copyOf(campo, campo.length * 2);
+		campo[lunghezzaCampo++] = c;
+	}
+
+	/**
+	 * Converte la cella corrente in double senza creare String (salvo i casi non gestiti dal percorso veloce)
+	 * @return valore della cella
+	 * @throws NumberFormatException cella non numerica
+	 */
+	private double valoreCampo()
+	{
+		int i = 0, n = lunghezzaCampo;
+		/* Ignora gli spazi, come fa Double.parseDouble */
+		while(i < n && (campo[i] & 0xFF) <= ' ') i++;
+		while(n > i && (campo[n-1] & 0xFF) <= ' ') n--;
+
+		boolean negativo = false;
+		if(i < n && (campo[i] == '-' || campo[i] == '+'))
+			negativo = campo[i++] == '-';
+
+		long mantissa = 0;
+		int cifre = 0, esponente = 0;
+		boolean punto = false, trovataCifra = false;
+		for(; i < n; i++)
+		{
+			byte c = campo[i];
+			if(c >= '0' && c <= '9')
+			{
+				trovataCifra = true;
+				mantissa = mantissa * 10 + (c - '0');
+				if(mantissa != 0 && ++cifre > MAX_CIFRE_ESATTE)
+					return valoreCampoLento();
+				if(punto)
+					esponente--;
+			}
+			else if(c == '.' && !punto)
+				punto = true;
+			else
+				break;
+		}
+		if(!trovataCifra)
+			return valoreCampoLento();
+
+		/* Esponente esplicito (1.5e-3) */
+		if(i < n && (campo[i] == 'e' || campo[i] == 'E'))
+		{
+			i++;
+			boolean espNegativo = false;
+			if(i < n && (campo[i] == '-' || campo[i] == '+'))
+				espNegativo = campo[i++] == '-';
+			int esp = 0, inizioEsp = i;
+			for(; i < n && campo[i] >= '0' && campo[i] <= '9'; i++)
+			{
+				esp = esp * 10 + (campo[i] - '0');
+				if(esp > POTENZE_10.length * 2)
+					return valoreCampoLento();
+			}
+			if(i == inizioEsp)
+				return valoreCampoLento();
+			esponente += espNegativo ? -esp : esp;
+		}
+		/* Caratteri non riconosciuti: lascia decidere a parseDouble */
+		if(i != n)
+			return valoreCampoLento();
+
+		double valore;
+		if(mantissa == 0)
+			valore = 0.0;
+		else if(esponente >= 0 && esponente < POTENZE_10.length)
+			valore = mantissa * POTENZE_10[esponente];
+		else if(esponente < 0 && -esponente < POTENZE_10.length)
+			valore = mantissa / POTENZE_10[-esponente];
+		else
+			return valoreCampoLento();
+		return negativo ? -valore : valore;
+	}
+
+	/**
+	 * Conversione tramite Double.parseDouble per i casi non coperti dal percorso veloce
+	 * @return valore della cella
+	 * @throws NumberFormatException cella non numerica
+	 */
+	private double valoreCampoLento()
+	{
+		return Double.parseDouble(new String(campo, 0, lunghezzaCampo, StandardCharsets.ISO_8859_1));
+	}
+}
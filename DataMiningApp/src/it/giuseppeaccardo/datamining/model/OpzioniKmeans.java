@@ -0,0 +1,140 @@
+package it.giuseppeaccardo.datamining.model;
+
+/**
+ * <h1>Opzioni K-Means!</h1>
+ * Criteri di arresto del K-Means classico. Senza opzioni l'algoritmo si ferma solo quando nessun record cambia cluster,
+ * cosa che su dati reali può richiedere centinaia di iterazioni quasi inutili: le opzioni permettono di fermarlo prima,
+ * con una durata limitata e prevedibile (es. per le richieste interattive).
+ * <ul>
+ * <li>tolleranza: spostamento massimo dei centroidi, al quadrato, relativo alla distanza quadratica media dei record dal
+ * proprio centroide (inerzia / record);</li>
+ * <li>soglia di inerzia: miglioramento relativo minimo dell'inerzia tra due iterazioni;</li>
+ * <li>numero massimo di iterazioni;</li>
+ * <li>tempo massimo in millisecondi dall'inizio dell'esecuzione.</li>
+ * </ul>
+ * I criteri sono controllati alla fine di ogni iterazione, quindi viene eseguita sempre almeno un'iterazione. Se uno
+ * di essi ferma l'algoritmo, un passaggio finale riassegna i record agli ultimi centroidi: il tempo massimo può essere
+ * superato al piu della durata di un'iterazione e di un'assegnazione. I valori predefiniti disattivano tutti i criteri.
+ * <br><br>
+ * Le opzioni indicano anche se calcolare le statistiche dei cluster (StatisticheCluster) nell'assegnazione finale.
+ * @author Giuseppe Accardo
+ * @version 1.0
+ * @since   14-02-2017
+ * @see KmeansLloyd
+ * @see RisultatoKmeans
+ */
+public class OpzioniKmeans
+{
+	/** Spostamento relativo dei centroidi sotto il quale fermarsi (0 = disattivato) **/
+	private double tolleranza;
+	/** Miglioramento relativo dell'inerzia sotto il quale fermarsi (0 = disattivato) **/
+	private double sogliaInerzia;
+	/** Numero massimo di iterazioni **/
+	private int maxIterazioni = Integer.MAX_VALUE;
+	/** Tempo massimo di esecuzione in millisecondi **/
+	private long tempoMassimo = Long.MAX_VALUE;
+	/** true per calcolare le statistiche dei cluster **/
+	private boolean statistiche;
+
+	/**
+	 * Ottieni la tolleranza sullo spostamento relativo dei centroidi
+	 * @return tolleranza
+	 */
+	public double getTolleranza()
+	{
+		return tolleranza;
+	}
+
+	/**
+	 * Setta la tolleranza sullo spostamento relativo dei centroidi. Il criterio confronta quadrati: l'algoritmo si
+	 * ferma quando il quadrato dello spostamento massimo di un centroide non supera tolleranza volte la distanza
+	 * quadratica media dei record dal proprio centroide (inerzia / record). Una tolleranza di 10^-4 ferma quindi
+	 * l'algoritmo quando nessun centroide si sposta piu di un centesimo della distanza tipica dei record.
+	 * @param tolleranza tolleranza (0 per disattivarla)
+	 */
+	public void setTolleranza(double tolleranza)
+	{
+		if(!(tolleranza >= 0))
+			throw new IllegalArgumentException("Tolleranza: " + tolleranza);
+		this.tolleranza = tolleranza;
+	}
+
+	/**
+	 * Ottieni la soglia sul miglioramento relativo dell'inerzia
+	 * @return soglia di inerzia
+	 */
+	public double getSogliaInerzia()
+	{
+		return sogliaInerzia;
+	}
+
+	/**
+	 * Setta la soglia sul miglioramento relativo dell'inerzia
+	 * @param sogliaInerzia soglia (0 per disattivarla)
+	 */
+	public void setSogliaInerzia(double sogliaInerzia)
+	{
+		if(!(sogliaInerzia >= 0))
+			throw new IllegalArgumentException("Soglia di inerzia: " + sogliaInerzia);
+		this.sogliaInerzia = sogliaInerzia;
+	}
+
+	/**
+	 * Ottieni il numero massimo di iterazioni
+	 * @return iterazioni massime
+	 */
+	public int getMaxIterazioni()
+	{
+		return maxIterazioni;
+	}
+
+	/**
+	 * Setta il numero massimo di iterazioni
+	 * @param maxIterazioni iterazioni massime (almeno 1)
+	 */
+	public void setMaxIterazioni(int maxIterazioni)
+	{
+		if(maxIterazioni < 1)
+			throw new IllegalArgumentException("Iterazioni massime: " + maxIterazioni);
+		this.maxIterazioni = maxIterazioni;
+	}
+
+	/**
+	 * Ottieni il tempo massimo di esecuzione
+	 * @return tempo massimo in millisecondi
+	 */
+	public long getTempoMassimo()
+	{
+		return tempoMassimo;
+	}
+
+	/**
+	 * Setta il tempo massimo di esecuzione
+	 * @param tempoMassimo tempo massimo in millisecondi
+	 */
+	public void setTempoMassimo(long tempoMassimo)
+	{
+		if(tempoMassimo < 0)
+			throw new IllegalArgumentException("Tempo massimo: " + tempoMassimo);
+		this.tempoMassimo = tempoMassimo;
+	}
+
+	/**
+	 * Verifica se calcolare le statistiche dei cluster
+	 * @return true se le statistiche sono calcolate
+	 */
+	public boolean isStatistiche()
+	{
+		return statistiche;
+	}
+
+	/**
+	 * Setta se calcolare le statistiche dei cluster: sono accumulate durante le assegnazioni (quindi senza altri
+	 * passaggi sui record), al costo di qualche operazione in piu per record
+	 * @param statistiche true per calcolare le statistiche
+	 */
+	public void setStatistiche(boolean statistiche)
+	{
+		this.statistiche = statistiche;
+	}
+}
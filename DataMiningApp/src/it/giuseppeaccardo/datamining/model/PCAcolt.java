@@ -4,10 +4,13 @@
     import cern.colt.matrix.DoubleMatrix2D;
     import cern.colt.matrix.doublealgo.Statistic;
     import cern.colt.matrix.impl.DenseDoubleMatrix2D;
-    import cern.colt.matrix.impl.SparseDoubleMatrix2D;
     import cern.colt.matrix.linalg.Algebra;
     import cern.colt.matrix.linalg.EigenvalueDecomposition;
+    import cern.colt.matrix.linalg.QRDecomposition;
     import hep.aida.bin.DynamicBin1D;
+    import java.util.Arrays;
+    import java.util.Random;
+    import java.util.concurrent.RecursiveAction;
     /**
      * <h1>PCA Colt!</h1>
      * Classe utile per la effettura la PCA (Analisi delle Componenti Principali) che è una tecnica per la semplificazione 
@@ -17,7 +20,15 @@
      * 3D. Ciò avviene tramite una trasformazione lineare delle variabili che proietta quelle originarie in un nuovo sistema 
      * cartesiano nel quale la nuova variabile con la maggiore varianza viene proiettata sul primo asse, la variabile nuova, 
      * seconda per dimensione della varianza, sul secondo asse e così via.<br><br>
-     * Tale classe utilizza la COLT, una libreria molto utilizzata in ambito scientifico in java.
+     * Tale classe utilizza la COLT, una libreria molto utilizzata in ambito scientifico in java.<br><br>
+     * Sui dataset grandi conviene pcaReduxMatrix(Dataset): medie, varianze e matrice di covarianza d×d sono calcolate in un
+     * solo passaggio parallelo direttamente sui record del dataset (senza la copia in matrice di toMatrix, né la matrice
+     * degli z-scores), la decomposizione in autovalori è eseguita solo sulla piccola matrice d×d e la proiezione sulle
+     * prime componenti è anch'essa parallela. Il risultato è lo stesso di pcaTransform, limitato alle prime componenti.
+     * <br><br>
+     * Sui dataset con molte features (centinaia) anche la covarianza d×d è costosa (d² operazioni per record): in questo
+     * caso le prime componenti sono calcolate con l'iterazione a blocchi randomizzata (pcaReduxMatrixRandomizzata), che
+     * non costruisce mai la covarianza né la sua decomposizione completa.
      * @author Giuseppe Accardo
      * @version 1.0
      * @since   14-02-2017
@@ -26,6 +37,15 @@
      */
     public class PCAcolt 
     {
+        /** Features oltre le quali pcaReduxMatrix usa l'iterazione randomizzata invece della covarianza completa **/
+        private static final int SOGLIA_FEATURE_RANDOMIZZATA = 64;
+        /** Colonne in piu del blocco rispetto alle componenti richieste (sovracampionamento) **/
+        private static final int SOVRACAMPIONAMENTO = 10;
+        /** Iterazioni di potenza predefinite del metodo randomizzato **/
+        private static final int ITERAZIONI_POTENZA = 3;
+        /** Seme predefinito del metodo randomizzato, per un risultato riproducibile **/
+        private static final long SEME_RANDOMIZZATA = 20170214L;
+
         /**
          * Effettua la riduzione della matrice in uno spazio a 3 dimensioni (features), cioè una matrice
          * con 3 colonne
@@ -44,6 +64,163 @@
 			return pm.toArray();
         }
 
+        /**
+         * Effettua la riduzione del dataset in uno spazio a 3 dimensioni (features) leggendo i record direttamente dal
+         * dataset, con un solo passaggio per la covarianza e uno per la proiezione
+         * @param dataset Dataset su cui effettuare la riduzione delle features
+         * @return Matrice ridotta su uno spazio a 3 dimensioni (una riga per record)
+         */
+        public static double[][] pcaReduxMatrix(Dataset dataset)
+        {
+            return pcaReduxMatrix(dataset, 3);
+        }
+
+        /**
+         * Proietta il dataset sulle sue prime componenti principali (degli z-scores delle features). Le medie, le
+         * deviazioni standard e la covarianza sono calcolate in un solo passaggio parallelo sui record; solo la matrice
+         * di correlazione d×d viene decomposta. Sui dataset con piu di 64 features le componenti sono calcolate con
+         * l'iterazione randomizzata (pcaReduxMatrixRandomizzata).
+         * @param dataset Dataset su cui effettuare la riduzione delle features
+         * @param componenti numero di componenti da conservare (al massimo il numero di features)
+         * @return Matrice ridotta (una riga per record, una colonna per componente)
+         */
+        public static double[][] pcaReduxMatrix(Dataset dataset, int componenti)
+        {
+            int d = dataset.getFeatureUsate().size();
+            if(d > SOGLIA_FEATURE_RANDOMIZZATA)
+                return pcaReduxMatrixRandomizzata(dataset, componenti, ITERAZIONI_POTENZA, SEME_RANDOMIZZATA);
+            componenti = Math.min(componenti, d);
+            TaskMomenti momenti = momenti(dataset, true);
+            double[] deviazioni = momenti.deviazioni();
+
+            /* Covarianza degli z-scores = correlazione; le features costanti hanno z-score nullo */
+            double[][] correlazione = new double[d][d];
+            for(int a = 0; a < d; a++)
+                for(int b = a; b < d; b++)
+                {
+                    double valore = deviazioni[a] == 0 || deviazioni[b] == 0 ? 0
+                                  : momenti.comomenti[a * d + b] / ((momenti.n - 1) * deviazioni[a] * deviazioni[b]);
+                    correlazione[a][b] = valore;
+                    correlazione[b][a] = valore;
+                }
+            // autovettori ordinati per varianza decrescente (flip perchè sono in ordine crescente)
+            DoubleMatrix2D vs = new EigenvalueDecomposition(new DenseDoubleMatrix2D(correlazione)).getV().viewColumnFlip();
+            double[][] base = new double[d][componenti];
+            for(int f = 0; f < d; f++)
+                for(int c = 0; c < componenti; c++)
+                    base[f][c] = vs.get(f, c);
+            System.out.println("Applico PCA per ridurre matrice in " + componenti + "D");
+            return proietta(dataset, momenti.medie, deviazioni, base);
+        }
+
+        /**
+         * Proietta il dataset sulle sue prime componenti principali calcolate con l'iterazione a blocchi randomizzata
+         * (range finder randomizzato), adatta ai dataset con centinaia di features:
+         * <ul>
+         * <li>un passaggio calcola solo medie e varianze delle features (O(d) per record);</li>
+         * <li>un blocco Q di l = componenti + 10 vettori casuali ortonormali viene moltiplicato per la covarianza C degli
+         * z-scores senza costruirla: C·Q = Zᵀ(Z·Q) è accumulato in un passaggio parallelo sui record (O(d·l) per record)
+         * e riortonormalizzato con la QR, per il numero di iterazioni richiesto;</li>
+         * <li>la piccola matrice l×l Qᵀ·C·Q viene decomposta e i suoi autovettori, riportati nello spazio delle features,
+         * approssimano le prime componenti (Rayleigh-Ritz);</li>
+         * <li>la proiezione sulle prime componenti è un passaggio parallelo (O(d·componenti) per record).</li>
+         * </ul>
+         * Con poche iterazioni le prime componenti sono praticamente esatte quando i loro autovalori sono ben separati
+         * dai successivi. Lo stesso seme produce lo stesso risultato.
+         * @param dataset Dataset su cui effettuare la riduzione delle features
+         * @param componenti numero di componenti da conservare (al massimo il numero di features)
+         * @param iterazioni iterazioni di potenza (almeno 1; 2-4 bastano di solito)
+         * @param seme seme del blocco casuale iniziale
+         * @return Matrice ridotta (una riga per record, una colonna per componente)
+         */
+        public static double[][] pcaReduxMatrixRandomizzata(Dataset dataset, int componenti, int iterazioni, long seme)
+        {
+            if(iterazioni < 1)
+                throw new IllegalArgumentException("Iterazioni di potenza: " + iterazioni);
+            int n = dataset.getNumRecord();
+            int d = dataset.getFeatureUsate().size();
+            componenti = Math.min(componenti, d);
+            int l = Math.min(d, componenti + SOVRACAMPIONAMENTO);
+            TaskMomenti momenti = momenti(dataset, false);
+            double[] deviazioni = momenti.deviazioni();
+
+            /* Blocco iniziale casuale (gaussiano) ortonormalizzato */
+            Random random = new Random(seme);
+            double[][] blocco = new double[d][l];
+            for(int f = 0; f < d; f++)
+                for(int c = 0; c < l; c++)
+                    blocco[f][c] = random.nextGaussian();
+            DoubleMatrix2D q = new QRDecomposition(new DenseDoubleMatrix2D(blocco)).getQ();
+            double[][] prodotto = null;
+            for(int iterazione = 0; iterazione < iterazioni; iterazione++)
+            {
+                blocco = q.toArray();
+                /* C·Q in un passaggio sui record */
+                TaskProdotto task = new TaskProdotto(dataset, momenti.medie, deviazioni, blocco, 0, n,
+                                                     TaskAssegnazione.soglia(n));
+                PoolCalcolo.get().invoke(task);
+                prodotto = task.prodotto;
+                if(iterazione < iterazioni - 1)
+                    q = new QRDecomposition(new DenseDoubleMatrix2D(prodotto)).getQ();
+            }
+            /* Rayleigh-Ritz: T = Qᵀ·(C·Q), simmetrica l×l */
+            double[][] ridotta = new double[l][l];
+            for(int a = 0; a < l; a++)
+                for(int b = a; b < l; b++)
+                {
+                    double somma = 0;
+                    for(int f = 0; f < d; f++)
+                        somma += (blocco[f][a] * prodotto[f][b] + blocco[f][b] * prodotto[f][a]) / 2;
+                    ridotta[a][b] = somma;
+                    ridotta[b][a] = somma;
+                }
+            // autovettori ordinati per varianza decrescente (flip perchè sono in ordine crescente)
+            DoubleMatrix2D vs = new EigenvalueDecomposition(new DenseDoubleMatrix2D(ridotta)).getV().viewColumnFlip();
+            double[][] base = new double[d][componenti];
+            for(int f = 0; f < d; f++)
+                for(int c = 0; c < componenti; c++)
+                {
+                    double somma = 0;
+                    for(int a = 0; a < l; a++)
+                        somma += blocco[f][a] * vs.get(a, c);
+                    base[f][c] = somma;
+                }
+            System.out.println("Applico PCA randomizzata per ridurre matrice in " + componenti + "D");
+            return proietta(dataset, momenti.medie, deviazioni, base);
+        }
+
+        /**
+         * Calcola in parallelo numero di record, medie e co-momenti (somme dei prodotti degli scarti dalla media) del
+         * dataset, in un solo passaggio sui record
+         * @param dataset dataset
+         * @param completi true per tutti i co-momenti, false per le sole varianze (diagonale)
+         * @return momenti del dataset
+         */
+        static TaskMomenti momenti(Dataset dataset, boolean completi)
+        {
+            int n = dataset.getNumRecord();
+            TaskMomenti momenti = new TaskMomenti(dataset, 0, n, TaskAssegnazione.soglia(n), completi);
+            PoolCalcolo.get().invoke(momenti);
+            return momenti;
+        }
+
+        /**
+         * Proietta in parallelo gli z-scores dei record su una base di componenti
+         * @param dataset dataset
+         * @param medie media di ogni feature
+         * @param deviazioni deviazione standard di ogni feature (0 per le features costanti)
+         * @param base componenti per colonna (feature f, componente c in base[f][c])
+         * @return proiezione (una riga per record)
+         */
+        static double[][] proietta(Dataset dataset, double[] medie, double[] deviazioni, double[][] base)
+        {
+            int n = dataset.getNumRecord();
+            double[][] proiezione = new double[n][];
+            PoolCalcolo.get().invoke(new TaskProiezione(dataset, medie, deviazioni, base, proiezione, 0, n,
+                                                        TaskAssegnazione.soglia(n)));
+            return proiezione;
+        }
+
         /** Returns a matrix in the space of principal components, take the first n columns  
          * @param matrix matrix
          * @return matrix2D matrix2D*/
@@ -71,7 +248,7 @@
          * @return zMatrix zmatrix
          */
         public static DoubleMatrix2D toZScores(final DoubleMatrix2D matrix) {
-            final DoubleMatrix2D zMatrix = new SparseDoubleMatrix2D(matrix.rows(), matrix.columns());
+            final DoubleMatrix2D zMatrix = new DenseDoubleMatrix2D(matrix.rows(), matrix.columns());
             for (int c = 0; c < matrix.columns(); c++) {
                 final DoubleMatrix1D column = matrix.viewColumn(c);
                 final DynamicBin1D bin = Statistic.bin(column);
@@ -90,4 +267,239 @@
 
             return zMatrix;
         }
-    }
\ No newline at end of file
+    
+        /**
+         * Compito Fork/Join che calcola i momenti di un intervallo di record con l'algoritmo di Welford (stabile anche
+         * con medie grandi rispetto alla varianza); i momenti dei due sotto-intervalli sono uniti con la formula di Chan.
+         */
+        @SuppressWarnings("serial")
+        static final class TaskMomenti extends RecursiveAction
+        {
+            private final Dataset dataset;
+            private final int inizio, fine, soglia;
+            /** true per tutti i co-momenti, false per le sole varianze **/
+            private final boolean completi;
+            /** Numero di record dell'intervallo **/
+            long n;
+            /** Media di ogni feature **/
+            double[] medie;
+            /** Somma dei prodotti degli scarti delle features a e b in posizione a*d+b (solo a <= b); con le sole
+             *  varianze, somma dei quadrati degli scarti della feature f in posizione f **/
+            double[] comomenti;
+
+            TaskMomenti(Dataset dataset, int inizio, int fine, int soglia, boolean completi)
+            {
+                this.dataset = dataset;
+                this.inizio = inizio;
+                this.fine = fine;
+                this.soglia = Math.max(soglia, 1);
+                this.completi = completi;
+            }
+
+            /**
+             * Posizione del co-momento delle features a e b (a <= b)
+             * @param a prima feature
+             * @param b seconda feature
+             * @param d numero di features
+             * @return indice in comomenti
+             */
+            private int indice(int a, int b, int d)
+            {
+                return completi ? a * d + b : a;
+            }
+
+            /**
+             * Deviazione standard campionaria di ogni feature
+             * @return deviazioni standard
+             */
+            double[] deviazioni()
+            {
+                int d = medie.length;
+                double[] deviazioni = new double[d];
+                for(int f = 0; f < d; f++)
+                    deviazioni[f] = n > 1 ? Math.sqrt(comomenti[indice(f, f, d)] / (n - 1)) : 0;
+                return deviazioni;
+            }
+
+            @Override
+            protected void compute()
+            {
+                int d = dataset.getFeatureUsate().size();
+                if(fine - inizio > soglia)
+                {
+                    int meta = (inizio + fine) >>> 1;
+                    TaskMomenti sinistra = new TaskMomenti(dataset, inizio, meta, soglia, completi);
+                    TaskMomenti destra = new TaskMomenti(dataset, meta, fine, soglia, completi);
+                    invokeAll(sinistra, destra);
+                    n = sinistra.n + destra.n;
+                    medie = sinistra.medie;
+                    comomenti = sinistra.comomenti;
+                    double[] delta = new double[d];
+                    for(int f = 0; f < d; f++)
+                        delta[f] = destra.medie[f] - sinistra.medie[f];
+                    double peso = n == 0 ? 0 : (double) sinistra.n * destra.n / n;
+                    for(int a = 0; a < d; a++)
+                        for(int b = a; b < (completi ? d : a + 1); b++)
+                            comomenti[indice(a, b, d)] += destra.comomenti[indice(a, b, d)] + delta[a] * delta[b] * peso;
+                    for(int f = 0; f < d; f++)
+                        medie[f] += n == 0 ? 0 : delta[f] * destra.n / n;
+                    return;
+                }
+                medie = new double[d];
+                comomenti = new double[completi ? d * d : d];
+                double[] punto = new double[d];
+                double[] delta = new double[d];
+                for(int i = inizio; i < fine; i++)
+                {
+                    dataset.getRecord(i, punto);
+                    n++;
+                    for(int f = 0; f < d; f++)
+                    {
+                        delta[f] = punto[f] - medie[f];
+                        medie[f] += delta[f] / n;
+                    }
+                    /* scarto prima dell'aggiornamento per scarto dopo l'aggiornamento */
+                    if(!completi)
+                    {
+                        for(int f = 0; f < d; f++)
+                            comomenti[f] += delta[f] * (punto[f] - medie[f]);
+                        continue;
+                    }
+                    for(int a = 0; a < d; a++)
+                    {
+                        double da = delta[a];
+                        for(int b = a; b < d; b++)
+                            comomenti[a * d + b] += da * (punto[b] - medie[b]);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Compito Fork/Join che accumula il prodotto tra la covarianza degli z-scores e un blocco di vettori, senza
+         * costruire la covarianza: per ogni record z si calcola t = zᵀ·Q e si somma z·tᵀ. Il risultato è diviso per n-1.
+         */
+        @SuppressWarnings("serial")
+        private static final class TaskProdotto extends RecursiveAction
+        {
+            private final Dataset dataset;
+            private final double[] medie, deviazioni;
+            private final double[][] blocco;
+            private final int inizio, fine, soglia;
+            /** Prodotto accumulato (feature f, vettore c in prodotto[f][c]) **/
+            double[][] prodotto;
+
+            TaskProdotto(Dataset dataset, double[] medie, double[] deviazioni, double[][] blocco, int inizio, int fine,
+                         int soglia)
+            {
+                this.dataset = dataset;
+                this.medie = medie;
+                this.deviazioni = deviazioni;
+                this.blocco = blocco;
+                this.inizio = inizio;
+                this.fine = fine;
+                this.soglia = Math.max(soglia, 1);
+            }
+
+            @Override
+            protected void compute()
+            {
+                int d = medie.length;
+                int l = blocco[0].length;
+                if(fine - inizio > soglia)
+                {
+                    int meta = (inizio + fine) >>> 1;
+                    TaskProdotto sinistra = new TaskProdotto(dataset, medie, deviazioni, blocco, inizio, meta, soglia);
+                    TaskProdotto destra = new TaskProdotto(dataset, medie, deviazioni, blocco, meta, fine, soglia);
+                    invokeAll(sinistra, destra);
+                    prodotto = sinistra.prodotto;
+                    for(int f = 0; f < d; f++)
+                        for(int c = 0; c < l; c++)
+                            prodotto[f][c] += destra.prodotto[f][c];
+                    return;
+                }
+                prodotto = new double[d][l];
+                double[] punto = new double[d];
+                double[] t = new double[l];
+                double scala = 1.0 / Math.max(1, dataset.getNumRecord() - 1);
+                for(int i = inizio; i < fine; i++)
+                {
+                    dataset.getRecord(i, punto);
+                    Arrays.fill(t, 0);
+                    for(int f = 0; f < d; f++)
+                    {
+                        double z = deviazioni[f] == 0 ? 0 : (punto[f] - medie[f]) / deviazioni[f];
+                        punto[f] = z;
+                        double[] riga = blocco[f];
+                        for(int c = 0; c < l; c++)
+                            t[c] += z * riga[c];
+                    }
+                    for(int f = 0; f < d; f++)
+                    {
+                        double z = punto[f] * scala;
+                        if(z == 0)
+                            continue;
+                        double[] riga = prodotto[f];
+                        for(int c = 0; c < l; c++)
+                            riga[c] += z * t[c];
+                    }
+                }
+            }
+        }
+
+        /**
+         * Compito Fork/Join che proietta gli z-scores di un intervallo di record sulla base delle componenti
+         */
+        @SuppressWarnings("serial")
+        private static final class TaskProiezione extends RecursiveAction
+        {
+            private final Dataset dataset;
+            private final double[] medie, deviazioni;
+            private final double[][] base, proiezione;
+            private final int inizio, fine, soglia;
+
+            TaskProiezione(Dataset dataset, double[] medie, double[] deviazioni, double[][] base, double[][] proiezione,
+                           int inizio, int fine, int soglia)
+            {
+                this.dataset = dataset;
+                this.medie = medie;
+                this.deviazioni = deviazioni;
+                this.base = base;
+                this.proiezione = proiezione;
+                this.inizio = inizio;
+                this.fine = fine;
+                this.soglia = Math.max(soglia, 1);
+            }
+
+            @Override
+            protected void compute()
+            {
+                if(fine - inizio > soglia)
+                {
+                    int meta = (inizio + fine) >>> 1;
+                    invokeAll(new TaskProiezione(dataset, medie, deviazioni, base, proiezione, inizio, meta, soglia),
+                              new TaskProiezione(dataset, medie, deviazioni, base, proiezione, meta, fine, soglia));
+                    return;
+                }
+                int d = medie.length;
+                int componenti = base[0].length;
+                double[] punto = new double[d];
+                for(int i = inizio; i < fine; i++)
+                {
+                    dataset.getRecord(i, punto);
+                    /* z-scores sul posto */
+                    for(int f = 0; f < d; f++)
+                        punto[f] = deviazioni[f] == 0 ? 0 : (punto[f] - medie[f]) / deviazioni[f];
+                    double[] riga = new double[componenti];
+                    for(int f = 0; f < d; f++)
+                    {
+                        double z = punto[f];
+                        double[] pesi = base[f];
+                        for(int c = 0; c < componenti; c++)
+                            riga[c] += z * pesi[c];
+                    }
+                    proiezione[i] = riga;
+                }
+            }
+        }
+    }
@@ -0,0 +1,41 @@
+package it.giuseppeaccardo.datamining.model;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * <h1>Pool Calcolo!</h1>
+ * Pool di thread condiviso da tutte le operazioni parallele del model (caricamento, k-means...). I thread sono creati una
+ * sola volta e riutilizzati, invece di creare nuovi thread ad ogni operazione. Il pool è di tipo "work-stealing"
+ * (ForkJoinPool): un thread che termina il suo lavoro "ruba" i compiti rimasti agli altri thread.
+ * <br><br>
+ * Il parallelismo è pari al numero di core disponibili e i thread sono daemon, quindi non impediscono la chiusura
+ * dell'applicazione.
+ * @author Giuseppe Accardo
+ * @version 1.0
+ * @since   14-02-2017
+ */
+public final class PoolCalcolo
+{
+	/** Pool condiviso **/
+	private static final ForkJoinPool POOL = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
+	/** Classe di sola utilita', non istanziabile **/
+	private PoolCalcolo() {}
+
+	/**
+	 * Ottieni il pool condiviso
+	 * @return pool di thread
+	 */
+	public static ForkJoinPool get()
+	{
+		return POOL;
+	}
+	/**
+	 * Ottieni il numero di thread del pool
+	 * @return parallelismo del pool
+	 */
+	public static int parallelismo()
+	{
+		return POOL.getParallelism();
+	}
+}
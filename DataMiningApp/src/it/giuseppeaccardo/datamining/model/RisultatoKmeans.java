@@ -0,0 +1,125 @@
+package it.giuseppeaccardo.datamining.model;
+
+/**
+ * <h1>Risultato K-Means!</h1>
+ * Esito di un'esecuzione del K-Means classico: quante iterazioni sono state eseguite, quale criterio ha fermato
+ * l'algoritmo, l'inerzia (somma dei quadrati delle distanze dei record dal proprio centroide) dell'ultima assegnazione
+ * e il numero di record di ogni cluster, e, se richieste, le statistiche dei cluster.
+ * @author Giuseppe Accardo
+ * @version 1.0
+ * @since   14-02-2017
+ * @see KmeansLloyd
+ * @see OpzioniKmeans
+ */
+public class RisultatoKmeans
+{
+	/**
+	 * Criterio che ha fermato il K-Means
+	 */
+	public enum CriterioArresto
+	{
+		/** Nessun record ha cambiato cluster o i centroidi non si sono spostati **/
+		CONVERGENZA,
+		/** Spostamento relativo dei centroidi sotto la tolleranza **/
+		TOLLERANZA,
+		/** Miglioramento relativo dell'inerzia sotto la soglia **/
+		INERZIA,
+		/** Raggiunto il numero massimo di iterazioni **/
+		MAX_ITERAZIONI,
+		/** Superato il tempo massimo **/
+		TEMPO
+	}
+
+	/** Numero di iterazioni eseguite **/
+	private final int iterazioni;
+	/** Criterio che ha fermato l'algoritmo **/
+	private final CriterioArresto criterio;
+	/** Somma dei quadrati delle distanze dei record dal proprio centroide nell'ultima assegnazione **/
+	private final double inerzia;
+	/** Numero di record di ogni cluster nell'ultima assegnazione **/
+	private final int[] conteggi;
+	/** Durata dell'esecuzione in millisecondi **/
+	private final long millisecondi;
+	/** Statistiche dei cluster (null se non richieste) **/
+	private final StatisticheCluster statistiche;
+
+	/**
+	 * Costruttore del risultato
+	 * @param iterazioni iterazioni eseguite
+	 * @param criterio criterio di arresto
+	 * @param inerzia inerzia dell'ultima assegnazione
+	 * @param conteggi numero di record di ogni cluster
+	 * @param millisecondi durata dell'esecuzione
+	 * @param statistiche statistiche dei cluster (null se non calcolate)
+	 */
+	public RisultatoKmeans(int iterazioni, CriterioArresto criterio, double inerzia, int[] conteggi, long millisecondi,
+						   StatisticheCluster statistiche)
+	{
+		this.iterazioni = iterazioni;
+		this.criterio = criterio;
+		this.inerzia = inerzia;
+		this.conteggi = conteggi;
+		this.millisecondi = millisecondi;
+		this.statistiche = statistiche;
+	}
+
+	/**
+	 * Ottieni le statistiche dei cluster dell'assegnazione finale
+	 * @return statistiche, null se non richieste nelle opzioni
+	 */
+	public StatisticheCluster getStatistiche()
+	{
+		return statistiche;
+	}
+
+	/**
+	 * Ottieni il numero di iterazioni eseguite
+	 * @return iterazioni
+	 */
+	public int getIterazioni()
+	{
+		return iterazioni;
+	}
+
+	/**
+	 * Ottieni il criterio che ha fermato l'algoritmo
+	 * @return criterio di arresto
+	 */
+	public CriterioArresto getCriterio()
+	{
+		return criterio;
+	}
+
+	/**
+	 * Ottieni l'inerzia (somma dei quadrati delle distanze dei record dal proprio centroide) dell'ultima assegnazione
+	 * @return inerzia
+	 */
+	public double getInerzia()
+	{
+		return inerzia;
+	}
+
+	/**
+	 * Ottieni il numero di record di ogni cluster
+	 * @return conteggi per cluster
+	 */
+	public int[] getConteggi()
+	{
+		return conteggi;
+	}
+
+	/**
+	 * Ottieni la durata dell'esecuzione
+	 * @return millisecondi
+	 */
+	public long getMillisecondi()
+	{
+		return millisecondi;
+	}
+
+	@Override
+	public String toString()
+	{
+		return "Iterazioni: " + iterazioni + " (" + criterio + "), inerzia: " + inerzia + ", tempo: " + millisecondi + " ms";
+	}
+}
@@ -0,0 +1,281 @@
+package it.giuseppeaccardo.datamining.model;
+
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * <h1>Scelta K!</h1>
+ * Scelta del numero di cluster: il K-Means classico è eseguito per tutti i k di un intervallo [kMin, kMax] sullo stesso
+ * Dataset (in sola lettura), in parallelo. Per ogni k si ottengono l'inerzia W(k) (somma dei quadrati delle distanze dei
+ * record dal proprio centroide) e un indice di qualità, il Calinski-Harabasz
+ * <br><br>
+ * CH(k) = ((T - W(k)) / (k - 1)) / (W(k) / (n - k))
+ * <br><br>
+ * dove T è la somma dei quadrati delle distanze dei record dalla media del dataset (piu è alto, piu i cluster sono
+ * compatti e separati). Il k consigliato è il "gomito" della curva dell'inerzia: normalizzati k e W(k) in [0, 1], è il
+ * k piu lontano (sotto) dalla retta che unisce il primo e l'ultimo punto della curva.
+ * <br><br>
+ * Con l'avvio "caldo" i k sono divisi in catene di k consecutivi: il primo k di ogni catena parte da centroidi scelti
+ * con k-means++ (o k-means||), ogni k successivo parte dai centroidi finali del k precedente piu un centroide aggiunto
+ * con un passo di k-means++, e converge in poche iterazioni. Le catene sono eseguite in parallelo. Senza avvio caldo ogni
+ * k è un compito indipendente. In entrambi i casi i semi dipendono solo dal seme dato e dal k, la lunghezza delle
+ * catene è fissa e la divisione in blocchi dei passaggi paralleli dipende solo dal numero di record
+ * (TaskAssegnazione.soglia), quindi lo stesso seme produce lo stesso risultato qualunque sia il numero di core.
+ * @author Giuseppe Accardo
+ * @version 1.0
+ * @since   14-02-2017
+ * @see DataMining
+ * @see KmeansLloyd
+ * @see InizializzazioneKmeans
+ */
+public class SceltaK
+{
+	/** Numero di k consecutivi di una catena con avvio caldo **/
+	private static final int LUNGHEZZA_CATENA = 4;
+	/** Intervallo dei k **/
+	private final int kMin, kMax;
+	/** Criteri di arresto di ogni esecuzione **/
+	private final OpzioniKmeans opzioni;
+	/** true per partire dai centroidi del k precedente **/
+	private final boolean avvioCaldo;
+	/** Esito e centroidi finali di ogni k (in posizione k - kMin), null se il k non converge **/
+	private RisultatoKmeans[] risultati;
+	private double[][][] centroidi;
+	/** Indice di Calinski-Harabasz di ogni k **/
+	private double[] punteggi;
+	/** k consigliato dal gomito dell'inerzia **/
+	private int kConsigliato;
+
+	/**
+	 * Costruttore della scelta di k
+	 * @param kMin primo k (almeno 1)
+	 * @param kMax ultimo k
+	 * @param opzioni criteri di arresto di ogni esecuzione
+	 * @param avvioCaldo true per partire dai centroidi finali del k precedente
+	 */
+	public SceltaK(int kMin, int kMax, OpzioniKmeans opzioni, boolean avvioCaldo)
+	{
+		if(kMin < 1 || kMax < kMin)
+			throw new IllegalArgumentException("Intervallo di k: [" + kMin + ", " + kMax + "]");
+		this.kMin = kMin;
+		this.kMax = kMax;
+		this.opzioni = opzioni;
+		this.avvioCaldo = avvioCaldo;
+	}
+
+	/**
+	 * Esegue il K-Means per tutti i k dell'intervallo e calcola inerzie, indici e k consigliato
+	 * @param dataset dataset da clusterizzare (in sola lettura)
+	 * @param seme seme da cui sono derivati i semi di ogni k
+	 * @return k consigliato, -1 se nessun k converge
+	 */
+	public int esegui(Dataset dataset, long seme)
+	{
+		int n = dataset.getNumRecord();
+		if(kMax > n)
+			throw new IllegalArgumentException("k=" + kMax + " maggiore dei record: " + n);
+		int numK = kMax - kMin + 1;
+		risultati = new RisultatoKmeans[numK];
+		centroidi = new double[numK][][];
+		int lunghezza = avvioCaldo ? LUNGHEZZA_CATENA : 1;
+		int numCatene = (numK + lunghezza - 1) / lunghezza;
+		TaskCatena[] catene = new TaskCatena[numCatene];
+		for(int c=0; c<numCatene; c++)
+			catene[c] = new TaskCatena(dataset, kMin + c * lunghezza, Math.min(kMax, kMin + (c + 1) * lunghezza - 1), seme);
+		PoolCalcolo.get().invoke(new TaskCatene(catene));
+
+		/* Punteggi di Calinski-Harabasz */
+		double totale = sommaQuadratiTotale(dataset);
+		punteggi = new double[numK];
+		for(int k=kMin; k<=kMax; k++)
+		{
+			RisultatoKmeans risultato = risultati[k - kMin];
+			if(risultato == null || k == 1 || k == n)
+				punteggi[k - kMin] = Double.NaN;
+			else
+				punteggi[k - kMin] = ((totale - risultato.getInerzia()) / (k - 1)) / (risultato.getInerzia() / (n - k));
+		}
+		kConsigliato = gomito();
+		return kConsigliato;
+	}
+
+	/**
+	 * Somma dei quadrati delle distanze dei record dalla media del dataset (l'inerzia con un solo cluster)
+	 * @param dataset dataset
+	 * @return somma dei quadrati totale
+	 */
+	private static double sommaQuadratiTotale(Dataset dataset)
+	{
+		int n = dataset.getNumRecord();
+		int[] etichette = new int[n];
+		double[][] media = CalcolatoreCentroideThread.calcola(dataset, etichette, 1);
+		TaskAssegnazione assegnazione = new TaskAssegnazione(dataset, media, etichette, 0, n, TaskAssegnazione.soglia(n));
+		PoolCalcolo.get().invoke(assegnazione);
+		return assegnazione.getInerzia();
+	}
+
+	/**
+	 * Trova il gomito della curva dell'inerzia tra i k che convergono
+	 * @return k consigliato, -1 se nessun k converge
+	 */
+	private int gomito()
+	{
+		int primo = -1, ultimo = -1;
+		for(int k=kMin; k<=kMax; k++)
+			if(risultati[k - kMin] != null)
+			{
+				if(primo < 0)
+					primo = k;
+				ultimo = k;
+			}
+		if(primo < 0 || ultimo - primo < 2)
+			return primo;
+		double wPrimo = risultati[primo - kMin].getInerzia();
+		double wUltimo = risultati[ultimo - kMin].getInerzia();
+		double scala = wPrimo - wUltimo;
+		if(!(scala > 0))
+			return primo;
+		int migliore = primo;
+		double distanzaMigliore = 0;
+		for(int k=primo + 1; k<ultimo; k++)
+		{
+			if(risultati[k - kMin] == null)
+				continue;
+			/* Coordinate normalizzate: la retta va da (0, 1) a (1, 0) */
+			double x = (double)(k - primo) / (ultimo - primo);
+			double y = (risultati[k - kMin].getInerzia() - wUltimo) / scala;
+			double distanza = (1 - x) - y;
+			if(distanza > distanzaMigliore)
+			{
+				distanzaMigliore = distanza;
+				migliore = k;
+			}
+		}
+		return migliore;
+	}
+
+	/**
+	 * Ottieni il k consigliato dal gomito dell'inerzia
+	 * @return k consigliato, -1 se nessun k converge
+	 */
+	public int getKConsigliato()
+	{
+		return kConsigliato;
+	}
+
+	/**
+	 * Ottieni il k con l'indice di Calinski-Harabasz maggiore
+	 * @return k migliore secondo l'indice, -1 se non è definito per nessun k
+	 */
+	public int getKCalinskiHarabasz()
+	{
+		int migliore = -1;
+		for(int k=kMin; k<=kMax; k++)
+			if(!Double.isNaN(punteggi[k - kMin]) && (migliore < 0 || punteggi[k - kMin] > punteggi[migliore - kMin]))
+				migliore = k;
+		return migliore;
+	}
+
+	/**
+	 * Ottieni l'inerzia di un k
+	 * @param k numero di cluster
+	 * @return inerzia, NaN se il k non converge
+	 */
+	public double getInerzia(int k)
+	{
+		RisultatoKmeans risultato = getRisultato(k);
+		return risultato == null ? Double.NaN : risultato.getInerzia();
+	}
+
+	/**
+	 * Ottieni l'indice di Calinski-Harabasz di un k
+	 * @param k numero di cluster
+	 * @return indice, NaN se il k non converge o se k = 1
+	 */
+	public double getPunteggio(int k)
+	{
+		return punteggi[k - kMin];
+	}
+
+	/**
+	 * Ottieni l'esito dell'esecuzione di un k
+	 * @param k numero di cluster
+	 * @return esito, null se il k non converge
+	 */
+	public RisultatoKmeans getRisultato(int k)
+	{
+		return risultati[k - kMin];
+	}
+
+	/**
+	 * Ottieni i centroidi finali di un k
+	 * @param k numero di cluster
+	 * @return centroidi, null se il k non converge
+	 */
+	public double[][] getCentroidi(int k)
+	{
+		return centroidi[k - kMin];
+	}
+
+	/**
+	 * Compito Fork/Join che avvia tutte le catene contemporaneamente
+	 */
+	@SuppressWarnings("serial")
+	private static final class TaskCatene extends RecursiveAction
+	{
+		private final TaskCatena[] catene;
+
+		TaskCatene(TaskCatena[] catene)
+		{
+			this.catene = catene;
+		}
+
+		@Override
+		protected void compute()
+		{
+			invokeAll(catene);
+		}
+	}
+
+	/**
+	 * Compito Fork/Join che esegue in ordine i k consecutivi [primo, ultimo], con un proprio array di etichette. Ogni
+	 * compito scrive solo le posizioni dei propri k nei risultati.
+	 */
+	@SuppressWarnings("serial")
+	private final class TaskCatena extends RecursiveAction
+	{
+		private final Dataset dataset;
+		private final int primo, ultimo;
+		private final long seme;
+
+		TaskCatena(Dataset dataset, int primo, int ultimo, long seme)
+		{
+			this.dataset = dataset;
+			this.primo = primo;
+			this.ultimo = ultimo;
+			this.seme = seme;
+		}
+
+		@Override
+		protected void compute()
+		{
+			int[] etichette = new int[dataset.getNumRecord()];
+			double[][] precedenti = null;
+			for(int k=primo; k<=ultimo; k++)
+			{
+				long semeK = seme + k * 0x9E3779B97F4A7C15L;
+				double[][] iniziali = precedenti == null ? InizializzazioneKmeans.scegli(dataset, k, semeK)
+														 : InizializzazioneKmeans.aggiungiCentroide(dataset, precedenti, semeK);
+				try
+				{
+					risultati[k - kMin] = new KmeansLloyd(opzioni).esegui(dataset, iniziali, etichette);
+					centroidi[k - kMin] = iniziali;
+					precedenti = iniziali;
+				}
+				catch(ArithmeticException e)
+				{	/* k divergente: il k successivo riparte da zero */
+					precedenti = null;
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,364 @@
+package it.giuseppeaccardo.datamining.model;
+
+import java.util.ArrayList;
+import java.util.SplittableRandom;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * <h1>Silhouette!</h1>
+ * Indice di qualità di un clustering. Per ogni record i, detti a(i) la distanza media dai record del proprio cluster e
+ * b(i) la minima, tra gli altri cluster, della distanza media dai record del cluster, la silhouette del record è
+ * <br><br>
+ * s(i) = (b(i) - a(i)) / max(a(i), b(i))
+ * <br><br>
+ * compresa tra -1 (record nel cluster sbagliato) e 1 (cluster compatti e ben separati); un record solo nel proprio
+ * cluster ha s(i) = 0. L'indice del clustering è la media di s(i) su tutti i record, e per ogni cluster la media sui suoi
+ * record. I cluster sono letti dagli indici inseriti (getIndiciInseriti) e le features dal Dataset.
+ * <ul>
+ * <li><b>esatta</b>: tutte le n² distanze. I record sono copiati raggruppati per cluster e confrontati a blocchi (un
+ * blocco di record con una "mattonella" di record di un cluster alla volta, che resta nella cache), e i blocchi sono
+ * divisi tra i core dal pool Fork/Join. Costo O(n²), adatta fino a qualche decina di migliaia di record.</li>
+ * <li><b>campionata</b>: s(i) è calcolata solo per un campione casuale di m record, e le distanze medie da ogni cluster
+ * sono stimate su un campione di al massimo m record del cluster. Costo O(m²·k) qualunque sia n, adatta ai milioni di
+ * record. Insieme alla media è dato il margine dell'intervallo di confidenza al 95% (1,96 volte l'errore standard della
+ * media campionaria).</li>
+ * </ul>
+ * @author Giuseppe Accardo
+ * @version 1.0
+ * @since   14-02-2017
+ * @see DataMining
+ * @see Cluster
+ */
+public class Silhouette
+{
+	/** Record di un cluster confrontati alla volta con un blocco **/
+	private static final int MATTONELLA = 512;
+	/** Record per blocco sotto i quali non si divide piu **/
+	private static final int SOGLIA = 32;
+	/** Quantile della normale per l'intervallo di confidenza al 95% **/
+	private static final double Z_95 = 1.96;
+
+	/** Silhouette media dei record valutati **/
+	private final double media;
+	/** Silhouette media dei record valutati di ogni cluster (NaN se nessuno) **/
+	private final double[] medieCluster;
+	/** Margine dell'intervallo di confidenza al 95% (0 se esatta) **/
+	private final double margine;
+	/** Numero di record valutati **/
+	private final int valutati;
+
+	/**
+	 * Costruttore del risultato
+	 * @param media silhouette media
+	 * @param medieCluster silhouette media per cluster
+	 * @param margine margine di confidenza
+	 * @param valutati record valutati
+	 */
+	private Silhouette(double media, double[] medieCluster, double margine, int valutati)
+	{
+		this.media = media;
+		this.medieCluster = medieCluster;
+		this.margine = margine;
+		this.valutati = valutati;
+	}
+
+	/**
+	 * Calcola la silhouette esatta su tutti i record dei cluster
+	 * @param dataset dataset clusterizzato
+	 * @param clusters cluster con gli indici dei record inseriti
+	 * @return silhouette del clustering (media NaN se meno di due cluster non vuoti)
+	 */
+	public static Silhouette esatta(Dataset dataset, Cluster[] clusters)
+	{
+		int k = clusters.length;
+		int[] dimensioni = new int[k];
+		for(int c=0; c<k; c++)
+			dimensioni[c] = clusters[c].getIndiciInseriti().size();
+		Riferimenti riferimenti = new Riferimenti(dataset, clusters, dimensioni);
+		/* Ogni record è confrontato con tutti gli altri: i record da valutare sono gli stessi riferimenti */
+		double[] valori = new double[riferimenti.punti.length];
+		PoolCalcolo.get().invoke(new TaskBlocco(riferimenti, riferimenti.punti, riferimenti.indici, riferimenti.cluster,
+												dimensioni, valori, 0, valori.length));
+		return riassumi(valori, riferimenti.cluster, dimensioni, false);
+	}
+
+	/**
+	 * Stima la silhouette su un campione casuale di record, con il margine di confidenza della stima
+	 * @param dataset dataset clusterizzato
+	 * @param clusters cluster con gli indici dei record inseriti
+	 * @param dimensioneCampione record da valutare, e record di ogni cluster su cui stimare le distanze medie
+	 * @param seme seme del campionamento
+	 * @return silhouette stimata (media NaN se meno di due cluster non vuoti)
+	 */
+	public static Silhouette campionata(Dataset dataset, Cluster[] clusters, int dimensioneCampione, long seme)
+	{
+		if(dimensioneCampione < 1)
+			throw new IllegalArgumentException("Dimensione del campione: " + dimensioneCampione);
+		SplittableRandom random = new SplittableRandom(seme);
+		int k = clusters.length;
+		int d = dataset.getFeatureUsate().size();
+		/* Etichetta di ogni record, e campione di riferimento di ogni cluster */
+		int[] dimensioni = new int[k];
+		int n = 0;
+		for(int c=0; c<k; c++)
+		{
+			dimensioni[c] = clusters[c].getIndiciInseriti().size();
+			n += dimensioni[c];
+		}
+		if(n == 0)
+			return new Silhouette(Double.NaN, new double[k], 0, 0);
+		int[] campioneCluster = new int[k];
+		for(int c=0; c<k; c++)
+			campioneCluster[c] = Math.min(dimensioni[c], dimensioneCampione);
+		Cluster[] ridotti = new Cluster[k];
+		for(int c=0; c<k; c++)
+			ridotti[c] = campione(clusters[c], campioneCluster[c], random);
+		Riferimenti riferimenti = new Riferimenti(dataset, ridotti, campioneCluster);
+
+		/* Record da valutare: estratti uniformemente tra tutti i record dei cluster */
+		int m = Math.min(n, dimensioneCampione);
+		double[][] punti = new double[m][];
+		int[] indici = new int[m];
+		int[] etichette = new int[m];
+		for(int q=0; q<m; q++)
+		{
+			int posizione = random.nextInt(n);
+			int c = 0;
+			while(posizione >= dimensioni[c])
+				posizione -= dimensioni[c++];
+			indici[q] = clusters[c].getIndiciInseriti().get(posizione);
+			etichette[q] = c;
+			punti[q] = dataset.getRecord(indici[q], new double[d]);
+		}
+		double[] valori = new double[m];
+		/* a(i) e b(i) sono stimate sui campioni dei cluster, ma un cluster di un solo record resta tale */
+		PoolCalcolo.get().invoke(new TaskBlocco(riferimenti, punti, indici, etichette, dimensioni, valori, 0, m));
+		return riassumi(valori, etichette, dimensioni, m < n);
+	}
+
+	/**
+	 * Estrae senza ripetizioni alcuni indici di un cluster (tutti se il campione non è piu piccolo del cluster)
+	 * @param cluster cluster
+	 * @param dimensione record da estrarre
+	 * @param random generatore casuale
+	 * @return cluster con i soli indici estratti
+	 */
+	private static Cluster campione(Cluster cluster, int dimensione, SplittableRandom random)
+	{
+		ArrayList<Integer> indici = cluster.getIndiciInseriti();
+		if(dimensione >= indici.size())
+			return cluster;
+		/* Mescolamento parziale di Fisher-Yates su una copia */
+		int[] copia = new int[indici.size()];
+		for(int i=0; i<copia.length; i++)
+			copia[i] = indici.get(i);
+		Cluster ridotto = new Cluster(cluster.getId());
+		ridotto.indiciInseriti.ensureCapacity(dimensione);
+		for(int i=0; i<dimensione; i++)
+		{
+			int j = i + random.nextInt(copia.length - i);
+			int scambio = copia[i];
+			copia[i] = copia[j];
+			copia[j] = scambio;
+			ridotto.addIndiciInseriti(copia[i]);
+		}
+		return ridotto;
+	}
+
+	/**
+	 * Riassume le silhouette dei record valutati in media, medie per cluster e margine di confidenza
+	 * @param valori silhouette dei record valutati
+	 * @param etichette cluster dei record valutati
+	 * @param dimensioni numero di record di ogni cluster
+	 * @param stima true se i record sono un campione (calcola il margine)
+	 * @return silhouette del clustering
+	 */
+	private static Silhouette riassumi(double[] valori, int[] etichette, int[] dimensioni, boolean stima)
+	{
+		int k = dimensioni.length;
+		double[] medieCluster = new double[k];
+		int[] conteggi = new int[k];
+		int nonVuoti = 0;
+		for(int dimensione : dimensioni)
+			if(dimensione > 0)
+				nonVuoti++;
+		double somma = 0, sommaQuadrati = 0;
+		for(int q=0; q<valori.length; q++)
+		{
+			somma += valori[q];
+			sommaQuadrati += valori[q] * valori[q];
+			medieCluster[etichette[q]] += valori[q];
+			conteggi[etichette[q]]++;
+		}
+		for(int c=0; c<k; c++)
+			medieCluster[c] = conteggi[c] == 0 ? Double.NaN : medieCluster[c] / conteggi[c];
+		int m = valori.length;
+		if(m == 0 || nonVuoti < 2)
+			return new Silhouette(Double.NaN, medieCluster, 0, m);
+		double media = somma / m;
+		double margine = 0;
+		if(stima && m > 1)
+		{
+			double varianza = Math.max(0, (sommaQuadrati - m * media * media) / (m - 1));
+			margine = Z_95 * Math.sqrt(varianza / m);
+		}
+		return new Silhouette(media, medieCluster, margine, m);
+	}
+
+	/**
+	 * Ottieni la silhouette media
+	 * @return silhouette media (stimata nel caso campionato), NaN se non definita
+	 */
+	public double getMedia()
+	{
+		return media;
+	}
+
+	/**
+	 * Ottieni la silhouette media dei record di un cluster
+	 * @param cluster indice del cluster
+	 * @return silhouette media del cluster, NaN se nessun suo record è stato valutato
+	 */
+	public double getMediaCluster(int cluster)
+	{
+		return medieCluster[cluster];
+	}
+
+	/**
+	 * Ottieni il margine dell'intervallo di confidenza al 95% della media: il valore vero è, con probabilità 95%, in
+	 * [media - margine, media + margine]
+	 * @return margine (0 per la silhouette esatta)
+	 */
+	public double getMargine()
+	{
+		return margine;
+	}
+
+	/**
+	 * Ottieni il numero di record valutati
+	 * @return record valutati
+	 */
+	public int getValutati()
+	{
+		return valutati;
+	}
+
+	@Override
+	public String toString()
+	{
+		return "Silhouette: " + media + (margine > 0 ? " ± " + margine : "") + " su " + valutati + " record";
+	}
+
+	/**
+	 * Record di riferimento copiati in memoria raggruppati per cluster: i record del cluster c occupano le posizioni
+	 * [inizio[c], inizio[c+1])
+	 */
+	private static final class Riferimenti
+	{
+		final double[][] punti;
+		final int[] indici, cluster, inizio;
+
+		Riferimenti(Dataset dataset, Cluster[] clusters, int[] dimensioni)
+		{
+			int k = clusters.length;
+			int d = dataset.getFeatureUsate().size();
+			inizio = new int[k + 1];
+			for(int c=0; c<k; c++)
+				inizio[c + 1] = inizio[c] + dimensioni[c];
+			punti = new double[inizio[k]][];
+			indici = new int[inizio[k]];
+			cluster = new int[inizio[k]];
+			for(int c=0; c<k; c++)
+				for(int r=0; r<dimensioni[c]; r++)
+				{
+					int posizione = inizio[c] + r;
+					indici[posizione] = clusters[c].getIndiciInseriti().get(r);
+					cluster[posizione] = c;
+					punti[posizione] = dataset.getRecord(indici[posizione], new double[d]);
+				}
+		}
+	}
+
+	/**
+	 * Compito Fork/Join che calcola la silhouette di un blocco di record da valutare, confrontandolo con i riferimenti
+	 * di un cluster alla volta, una mattonella per volta
+	 */
+	@SuppressWarnings("serial")
+	private static final class TaskBlocco extends RecursiveAction
+	{
+		private final Riferimenti riferimenti;
+		private final double[][] punti;
+		private final int[] indici, etichette, dimensioni;
+		private final double[] valori;
+		private final int inizio, fine;
+
+		TaskBlocco(Riferimenti riferimenti, double[][] punti, int[] indici, int[] etichette, int[] dimensioni,
+				   double[] valori, int inizio, int fine)
+		{
+			this.riferimenti = riferimenti;
+			this.punti = punti;
+			this.indici = indici;
+			this.etichette = etichette;
+			this.dimensioni = dimensioni;
+			this.valori = valori;
+			this.inizio = inizio;
+			this.fine = fine;
+		}
+
+		@Override
+		protected void compute()
+		{
+			if(fine - inizio > SOGLIA)
+			{
+				int meta = (inizio + fine) >>> 1;
+				invokeAll(new TaskBlocco(riferimenti, punti, indici, etichette, dimensioni, valori, inizio, meta),
+						  new TaskBlocco(riferimenti, punti, indici, etichette, dimensioni, valori, meta, fine));
+				return;
+			}
+			int k = dimensioni.length;
+			int righe = fine - inizio;
+			/* Somma delle distanze di ogni record del blocco dai riferimenti di ogni cluster, e riferimenti contati */
+			double[] somme = new double[righe * k];
+			int[] contati = new int[righe * k];
+			for(int c=0; c<k; c++)
+				for(int t=riferimenti.inizio[c]; t<riferimenti.inizio[c + 1]; t+=MATTONELLA)
+				{
+					int fineMattonella = Math.min(t + MATTONELLA, riferimenti.inizio[c + 1]);
+					for(int q=inizio; q<fine; q++)
+					{
+						double[] punto = punti[q];
+						double somma = 0;
+						int contato = 0;
+						for(int r=t; r<fineMattonella; r++)
+						{	/* Il record non è confrontato con se stesso */
+							if(riferimenti.indici[r] == indici[q])
+								continue;
+							somma += KernelDistanza.distanza(punto, riferimenti.punti[r]);
+							contato++;
+						}
+						somme[(q - inizio) * k + c] += somma;
+						contati[(q - inizio) * k + c] += contato;
+					}
+				}
+			for(int q=inizio; q<fine; q++)
+			{
+				int base = (q - inizio) * k;
+				int proprio = etichette[q];
+				if(dimensioni[proprio] <= 1 || contati[base + proprio] == 0)
+				{	/* Record solo nel proprio cluster */
+					valori[q] = 0;
+					continue;
+				}
+				double a = somme[base + proprio] / contati[base + proprio];
+				double b = Double.POSITIVE_INFINITY;
+				for(int c=0; c<k; c++)
+					if(c != proprio && contati[base + c] > 0)
+						b = Math.min(b, somme[base + c] / contati[base + c]);
+				if(b == Double.POSITIVE_INFINITY)
+					valori[q] = 0;
+				else
+					valori[q] = Math.max(a, b) == 0 ? 0 : (b - a) / Math.max(a, b);
+			}
+		}
+	}
+}
@@ -0,0 +1,291 @@
+package it.giuseppeaccardo.datamining.model;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * <h1>Snapshot Dataset!</h1>
+ * Formato binario colonnare con cui salvare un dataset già caricato e riaprirlo senza ripetere il parsing del file di
+ * testo. Il file è composto da un'intestazione e dai blocchi delle colonne:
+ * <pre>
+ * int   magic ("DMSN")      int  versione
+ * long  numero record       long checksum (CRC32 dei blocchi delle colonne)
+ * long  dimensione sorgente long data di modifica della sorgente (-1 se lo snapshot non ha un file sorgente)
+ * int   numero colonne      per ogni colonna: int lunghezza + nome in UTF-8
+ * padding fino ad un multiplo di 8 byte
+ * blocchi delle colonne: numero record double little-endian per ogni colonna
+ * </pre>
+ * Tutti i valori sono little-endian. Poichè i blocchi sono allineati, l'apertura non copia nulla: ogni colonna è
+ * mappata direttamente sulla sua porzione del file (ColonnaMappata), quindi riaprire un dataset di qualche GB richiede
+ * pochi millisecondi. La verifica del checksum, che richiede di leggere tutto il file, è facoltativa; dimensione e data
+ * di modifica del file sorgente salvate nell'intestazione permettono comunque di scartare uno snapshot non aggiornato.
+ * <br><br>
+ * Lo snapshot è scritto in un file temporaneo nella stessa cartella e poi rinominato atomicamente al posto del
+ * precedente: uno snapshot già mappato da un altro dataset non viene mai troncato o riscritto.
+ * @author Giuseppe Accardo
+ * @version 1.0
+ * @since   14-02-2017
+ * @see Dataset
+ * @see ColonnaMappata
+ */
+public final class SnapshotDataset
+{
+	/** Estensione dei file di snapshot **/
+	public static final String ESTENSIONE = ".dms";
+	/** Identificativo del formato ("DMSN") **/
+	private static final int MAGIC = 0x4E534D44;
+	/** Versione del formato **/
+	private static final int VERSIONE = 2;
+	/** Posizione del checksum nell'intestazione **/
+	private static final long POSIZIONE_CHECKSUM = 16;
+	/** Lunghezza della parte fissa dell'intestazione **/
+	private static final int LUNGHEZZA_FISSA = 44;
+	/** Dimensione del buffer di scrittura **/
+	private static final int DIMENSIONE_BUFFER = 1 << 16;
+
+	/** Classe di sola utilita', non istanziabile **/
+	private SnapshotDataset() {}
+
+	/**
+	 * Salva le colonne usate dal dataset in uno snapshot senza file sorgente
+	 * @param dataset dataset da salvare
+	 * @param file file di destinazione (sostituito se esiste)
+	 * @throws IOException errore durante la scrittura
+	 */
+	public static void salva(Dataset dataset, File file) throws IOException
+	{
+		salva(dataset, file, -1, -1);
+	}
+
+	/**
+	 * Salva le colonne usate dal dataset in uno snapshot, registrando dimensione e data di modifica del file sorgente
+	 * (da rilevare prima del parsing, così una modifica successiva rende lo snapshot non aggiornato)
+	 * @param dataset dataset da salvare
+	 * @param file file di destinazione (sostituito se esiste)
+	 * @param dimensioneSorgente dimensione in byte del file sorgente (-1 se non c'è)
+	 * @param modificaSorgente data di modifica del file sorgente (-1 se non c'è)
+	 * @throws IOException errore durante la scrittura
+	 */
+	public static void salva(Dataset dataset, File file, long dimensioneSorgente, long modificaSorgente) throws IOException
+	{
+		int numColonne = dataset.getTabella().size();
+		int numRecord = dataset.getNumRecord();
+
+		/* Intestazione */
+		byte[][] nomi = new byte[numColonne][];
+		int lunghezzaIntestazione = LUNGHEZZA_FISSA;
+		for(int j=0; j<numColonne; j++)
+		{
+			nomi[j] = dataset.getFeatures()[dataset.getFeatureUsate().get(j)].getBytes(StandardCharsets.UTF_8);
+			lunghezzaIntestazione += 4 + nomi[j].length;
+		}
+		ByteBuffer intestazione = ByteBuffer.allocate(allinea(lunghezzaIntestazione)).order(ByteOrder.LITTLE_ENDIAN);
+		intestazione.putInt(MAGIC).putInt(VERSIONE).putLong(numRecord).putLong(0L)
+					.putLong(dimensioneSorgente).putLong(modificaSorgente).putInt(numColonne);
+		for(byte[] nome : nomi)
+			intestazione.putInt(nome.length).put(nome);
+		intestazione.clear();
+
+		File cartella = file.getAbsoluteFile().getParentFile();
+		File temporaneo = File.createTempFile(file.getName() + ".", ".tmp", cartella);
+		boolean completato = false;
+		try
+		{
+			scriviFile(dataset, temporaneo, intestazione);
+			Files.move(temporaneo.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE,
+					   StandardCopyOption.REPLACE_EXISTING);
+			completato = true;
+		}
+		finally {
+			if(!completato)
+				temporaneo.delete();
+		}
+	}
+
+	/**
+	 * Scrive intestazione e blocchi delle colonne in un file nuovo
+	 * @param dataset dataset da salvare
+	 * @param file file da scrivere
+	 * @param intestazione intestazione con il checksum ancora a zero
+	 * @throws IOException errore durante la scrittura
+	 */
+	private static void scriviFile(Dataset dataset, File file, ByteBuffer intestazione) throws IOException
+	{
+		int numRecord = dataset.getNumRecord();
+		try(RandomAccessFile raf = new RandomAccessFile(file, "rw"); FileChannel canale = raf.getChannel())
+		{
+			scrivi(canale, intestazione);
+
+			/* Blocchi delle colonne, calcolando il checksum durante la scrittura */
+			CRC32 crc = new CRC32();
+			ByteBuffer buffer = ByteBuffer.allocateDirect(DIMENSIONE_BUFFER).order(ByteOrder.LITTLE_ENDIAN);
+			for(Colonna colonna : dataset.getTabella())
+			{
+				for(int i=0; i<numRecord; i++)
+				{
+					if(!buffer.hasRemaining())
+						scriviBlocco(canale, buffer, crc);
+					buffer.putDouble(colonna.get(i));
+				}
+			}
+			scriviBlocco(canale, buffer, crc);
+
+			/* Ora che è noto, scrivi il checksum nell'intestazione */
+			ByteBuffer checksum = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+			checksum.putLong(0, crc.getValue());
+			canale.write(checksum, POSIZIONE_CHECKSUM);
+		}
+	}
+
+	/**
+	 * Apre uno snapshot mappando le sue colonne, senza controllare il file sorgente
+	 * @param file file dello snapshot
+	 * @param features nomi attesi delle colonne (nello stesso ordine)
+	 * @param verifica true per verificare il checksum (richiede la lettura di tutto il file)
+	 * @return colonne mappate dello snapshot
+	 * @throws IOException file non valido, troncato, corrotto o con colonne diverse da quelle attese
+	 */
+	public static Colonna[] apri(File file, String[] features, boolean verifica) throws IOException
+	{
+		return apri(file, features, verifica, null);
+	}
+
+	/**
+	 * Apre uno snapshot mappando le sue colonne
+	 * @param file file dello snapshot
+	 * @param features nomi attesi delle colonne (nello stesso ordine)
+	 * @param verifica true per verificare il checksum (richiede la lettura di tutto il file)
+	 * @param sorgente file da cui è stato ricavato lo snapshot, la cui dimensione e data di modifica devono essere
+	 * quelle salvate nell'intestazione (null per non controllarlo)
+	 * @return colonne mappate dello snapshot
+	 * @throws IOException file non valido, troncato, corrotto, non aggiornato o con colonne diverse da quelle attese
+	 */
+	public static Colonna[] apri(File file, String[] features, boolean verifica, File sorgente) throws IOException
+	{
+		try(RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel canale = raf.getChannel())
+		{
+			ByteBuffer fisso = leggi(canale, 0, LUNGHEZZA_FISSA);
+			if(fisso.getInt() != MAGIC)
+				throw new IOException("Il file non è uno snapshot: " + file.getPath());
+			if(fisso.getInt() != VERSIONE)
+				throw new IOException("Versione dello snapshot non supportata: " + file.getPath());
+			long numRecord = fisso.getLong();
+			long checksum = fisso.getLong();
+			long dimensioneSorgente = fisso.getLong();
+			long modificaSorgente = fisso.getLong();
+			int numColonne = fisso.getInt();
+			if(numRecord < 0 || numRecord > Integer.MAX_VALUE)
+				throw new IOException("Numero di record non valido: " + numRecord);
+			/* Un'intestazione corrotta non deve provocare allocazioni arbitrarie, ma un errore di I/O */
+			if(numColonne != features.length)
+				throw new IOException("Lo snapshot contiene " + numColonne + " colonne invece di " + features.length
+									  + ": " + file.getPath());
+			if(sorgente != null && (sorgente.length() != dimensioneSorgente || sorgente.lastModified() != modificaSorgente))
+				throw new IOException("Snapshot non aggiornato rispetto a " + sorgente.getPath());
+
+			/* Nomi delle colonne */
+			String[] nomi = new String[numColonne];
+			long posizione = LUNGHEZZA_FISSA;
+			for(int j=0; j<numColonne; j++)
+			{
+				int lunghezza = leggi(canale, posizione, 4).getInt();
+				ByteBuffer nome = leggi(canale, posizione + 4, lunghezza);
+				nomi[j] = new String(nome.array(), 0, lunghezza, StandardCharsets.UTF_8);
+				posizione += 4 + lunghezza;
+			}
+			if(!Arrays.equals(nomi, features))
+				throw new IOException("Lo snapshot contiene colonne diverse: " + Arrays.toString(nomi));
+
+			long inizioDati = allinea(posizione);
+			long dimensioneColonna = numRecord * Double.BYTES;
+			if(canale.size() != inizioDati + numColonne * dimensioneColonna)
+				throw new IOException("Snapshot troncato: " + file.getPath());
+
+			if(verifica)
+				verificaChecksum(canale, inizioDati, numColonne * dimensioneColonna, checksum);
+
+			/* Le colonne sono mappate direttamente sul file (zero-copy) */
+			Colonna[] colonne = new Colonna[numColonne];
+			for(int j=0; j<numColonne; j++)
+				colonne[j] = new ColonnaMappata(canale, inizioDati + j * dimensioneColonna, (int) numRecord);
+			return colonne;
+		}
+	}
+
+	/**
+	 * Verifica che il checksum dei blocchi delle colonne corrisponda a quello salvato
+	 * @throws IOException snapshot corrotto
+	 */
+	private static void verificaChecksum(FileChannel canale, long inizio, long lunghezza, long atteso) throws IOException
+	{
+		CRC32 crc = new CRC32();
+		for(long letti = 0; letti < lunghezza; )
+		{
+			long blocco = Math.min(lunghezza - letti, 1L << 30);
+			MappedByteBuffer dati = canale.map(FileChannel.MapMode.READ_ONLY, inizio + letti, blocco);
+			crc.update(dati);
+			letti += blocco;
+		}
+		if(crc.getValue() != atteso)
+			throw new IOException("Checksum dello snapshot non valido");
+	}
+
+	/**
+	 * Scrive il buffer nel file aggiornando il checksum e lo svuota
+	 */
+	private static void scriviBlocco(FileChannel canale, ByteBuffer buffer, CRC32 crc) throws IOException
+	{
+		buffer.flip();
+		crc.update(buffer.duplicate());
+		scrivi(canale, buffer);
+		buffer.clear();
+	}
+
+	/**
+	 * Scrive tutto il contenuto del buffer nel file
+	 */
+	private static void scrivi(FileChannel canale, ByteBuffer buffer) throws IOException
+	{
+		while(buffer.hasRemaining())
+			canale.write(buffer);
+	}
+
+	/**
+	 * Legge un numero fissato di byte a partire da una posizione del file
+	 * @throws EOFException file terminato prima del previsto
+	 */
+	private static ByteBuffer leggi(FileChannel canale, long posizione, int lunghezza) throws IOException
+	{
+		if(lunghezza < 0 || posizione + lunghezza > canale.size())
+			throw new EOFException("Intestazione dello snapshot non valida");
+		ByteBuffer buffer = ByteBuffer.allocate(lunghezza).order(ByteOrder.LITTLE_ENDIAN);
+		while(buffer.hasRemaining())
+			if(canale.read(buffer, posizione + buffer.position()) < 0)
+				throw new EOFException("Intestazione dello snapshot non valida");
+		buffer.flip();
+		return buffer;
+	}
+
+	/**
+	 * Arrotonda una posizione al multiplo di 8 successivo
+	 */
+	private static int allinea(int posizione)
+	{
+		return (posizione + 7) & ~7;
+	}
+	private static long allinea(long posizione)
+	{
+		return (posizione + 7) & ~7L;
+	}
+}
@@ -0,0 +1,211 @@
+package it.giuseppeaccardo.datamining.model;
+
+import java.util.Arrays;
+
+/**
+ * <h1>Statistiche Cluster!</h1>
+ * Statistiche di un clustering ottenute dagli accumulatori dell'assegnazione finale, senza altri passaggi sui record.
+ * Per ogni cluster: numero di record, somma dei quadrati delle distanze dalla media (SSE), raggio massimo e varianza di
+ * ogni feature. Globali:
+ * <ul>
+ * <li><b>inerzia</b>: somma degli SSE di tutti i cluster;</li>
+ * <li><b>Davies-Bouldin</b>: media, su tutti i cluster, del massimo di (S(i) + S(j)) / d(c(i), c(j)), dove S(i) è la
+ * distanza quadratica media dei record del cluster dalla media, radice di SSE(i) / n(i) (la variante con q = 2
+ * dell'indice, che non richiede le distanze dei singoli record; piu è basso, meglio è);</li>
+ * <li><b>Calinski-Harabasz</b>: (B / (k - 1)) / (W / (n - k)), con W l'inerzia e B la somma su tutti i cluster di
+ * n(j)·d(c(j), media)² (piu è alto, meglio è).</li>
+ * </ul>
+ * Dagli scarti dei record dal centroide dell'assegnazione si ricava la media di ogni cluster (centroide + scarto
+ * medio): SSE, varianze e indici globali sono calcolati rispetto alle medie, il raggio massimo rispetto ai centroidi
+ * dell'assegnazione, che nel K-Means convergente coincidono con le medie. I cluster vuoti sono esclusi dagli indici
+ * globali.
+ * @author Giuseppe Accardo
+ * @version 1.0
+ * @since   14-02-2017
+ * @see TaskAssegnazione
+ * @see DataMining
+ */
+public class StatisticheCluster
+{
+	/** Numero di record di ogni cluster **/
+	private final int[] dimensioni;
+	/** Somma dei quadrati delle distanze dalla media e distanza massima dal centroide di ogni cluster **/
+	private final double[] sse, raggiMassimi;
+	/** Varianza di ogni feature per cluster (NaN per i cluster vuoti) **/
+	private final double[][] varianze;
+	/** Indici globali del clustering **/
+	private final double inerzia, daviesBouldin, calinskiHarabasz;
+
+	/**
+	 * Costruttore che ricava le statistiche dagli accumulatori di un'assegnazione (gli array non sono conservati)
+	 * @param centroidi centroidi dell'assegnazione
+	 * @param conteggi numero di record per cluster
+	 * @param raggiQuadrati massimo dei quadrati delle distanze dei record dal centroide per cluster
+	 * @param scarti somma degli scarti dal centroide (cluster j, feature f in posizione j*d+f)
+	 * @param scartiQuadrati somma dei quadrati degli scarti dal centroide (cluster j, feature f in posizione j*d+f)
+	 */
+	StatisticheCluster(double[][] centroidi, int[] conteggi, double[] raggiQuadrati, double[] scarti,
+					   double[] scartiQuadrati)
+	{
+		int k = centroidi.length;
+		int d = k == 0 ? 0 : centroidi[0].length;
+		dimensioni = conteggi.clone();
+		/* Una sola radice per cluster */
+		raggiMassimi = new double[k];
+		for(int j=0; j<k; j++)
+			raggiMassimi[j] = Math.sqrt(raggiQuadrati[j]);
+		sse = new double[k];
+		varianze = new double[k][d];
+		double[][] medie = new double[k][d];
+		double somma = 0;
+		int n = 0, nonVuoti = 0;
+		double[] media = new double[d];
+		for(int j=0; j<k; j++)
+		{
+			int nj = conteggi[j];
+			if(nj == 0)
+			{
+				Arrays.fill(varianze[j], Double.NaN);
+				continue;
+			}
+			nonVuoti++;
+			n += nj;
+			for(int f=0; f<d; f++)
+			{	/* Somma dei quadrati degli scarti dalla media: S2 - S1²/n */
+				double s1 = scarti[j * d + f];
+				double quadrati = Math.max(0, scartiQuadrati[j * d + f] - s1 * s1 / nj);
+				varianze[j][f] = quadrati / nj;
+				sse[j] += quadrati;
+				medie[j][f] = centroidi[j][f] + s1 / nj;
+				media[f] += nj * medie[j][f];
+			}
+			somma += sse[j];
+		}
+		inerzia = somma;
+
+		/* Calinski-Harabasz: dispersione tra i cluster rispetto a quella interna */
+		double tra = 0;
+		if(n > 0)
+		{
+			for(int f=0; f<d; f++)
+				media[f] /= n;
+			for(int j=0; j<k; j++)
+				if(conteggi[j] > 0)
+					tra += conteggi[j] * KernelDistanza.distanzaQuadrata(medie[j], media);
+		}
+		calinskiHarabasz = nonVuoti < 2 || n <= nonVuoti ? Double.NaN
+														 : (tra / (nonVuoti - 1)) / (inerzia / (n - nonVuoti));
+
+		/* Davies-Bouldin: per ogni cluster il cluster piu "simile" */
+		if(nonVuoti < 2)
+			daviesBouldin = Double.NaN;
+		else
+		{
+			double totale = 0;
+			for(int i=0; i<k; i++)
+			{
+				if(conteggi[i] == 0)
+					continue;
+				double peggiore = 0;
+				for(int j=0; j<k; j++)
+				{
+					if(j == i || conteggi[j] == 0)
+						continue;
+					double distanza = KernelDistanza.distanza(medie[i], medie[j]);
+					double rapporto = (Math.sqrt(sse[i] / conteggi[i]) + Math.sqrt(sse[j] / conteggi[j])) / distanza;
+					peggiore = Math.max(peggiore, distanza == 0 ? Double.POSITIVE_INFINITY : rapporto);
+				}
+				totale += peggiore;
+			}
+			daviesBouldin = totale / nonVuoti;
+		}
+	}
+
+	/**
+	 * Ottieni il numero di cluster
+	 * @return numero di cluster
+	 */
+	public int getNumCluster()
+	{
+		return dimensioni.length;
+	}
+
+	/**
+	 * Ottieni il numero di record di un cluster
+	 * @param cluster indice del cluster
+	 * @return numero di record
+	 */
+	public int getDimensione(int cluster)
+	{
+		return dimensioni[cluster];
+	}
+
+	/**
+	 * Ottieni la somma dei quadrati delle distanze dei record di un cluster dalla loro media
+	 * @param cluster indice del cluster
+	 * @return SSE del cluster
+	 */
+	public double getSse(int cluster)
+	{
+		return sse[cluster];
+	}
+
+	/**
+	 * Ottieni la distanza massima di un record del cluster dal centroide
+	 * @param cluster indice del cluster
+	 * @return raggio massimo
+	 */
+	public double getRaggioMassimo(int cluster)
+	{
+		return raggiMassimi[cluster];
+	}
+
+	/**
+	 * Ottieni la varianza di ogni feature nei record di un cluster
+	 * @param cluster indice del cluster
+	 * @return varianze per feature (NaN se il cluster è vuoto)
+	 */
+	public double[] getVarianze(int cluster)
+	{
+		return varianze[cluster].clone();
+	}
+
+	/**
+	 * Ottieni l'inerzia, somma degli SSE di tutti i cluster
+	 * @return inerzia
+	 */
+	public double getInerzia()
+	{
+		return inerzia;
+	}
+
+	/**
+	 * Ottieni l'indice di Davies-Bouldin
+	 * @return indice (NaN con meno di due cluster non vuoti)
+	 */
+	public double getDaviesBouldin()
+	{
+		return daviesBouldin;
+	}
+
+	/**
+	 * Ottieni l'indice di Calinski-Harabasz
+	 * @return indice (NaN con meno di due cluster non vuoti)
+	 */
+	public double getCalinskiHarabasz()
+	{
+		return calinskiHarabasz;
+	}
+
+	@Override
+	public String toString()
+	{
+		StringBuilder testo = new StringBuilder();
+		testo.append("Inerzia: ").append(inerzia).append(", Davies-Bouldin: ").append(daviesBouldin)
+			 .append(", Calinski-Harabasz: ").append(calinskiHarabasz);
+		for(int j=0; j<dimensioni.length; j++)
+			testo.append("\nCluster ").append(j).append(": ").append(dimensioni[j]).append(" record, SSE ").append(sse[j])
+				 .append(", raggio massimo ").append(raggiMassimi[j]);
+		return testo.toString();
+	}
+}
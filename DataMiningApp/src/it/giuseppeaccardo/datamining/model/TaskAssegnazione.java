@@ -0,0 +1,325 @@
+package it.giuseppeaccardo.datamining.model;
+
+import java.util.Arrays;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * <h1>Task Assegnazione!</h1>
+ * Compito Fork/Join che assegna ogni record di un intervallo al centroide piu vicino. L'intervallo viene diviso a metà
+ * ricorsivamente finchè non diventa abbastanza piccolo da essere elaborato direttamente, e i sotto-compiti sono
+ * distribuiti dal pool "work-stealing" tra tutti i core.
+ * <br><br>
+ * Ogni foglia scrive le etichette (indice del cluster) nella sua porzione dell'array condiviso, quindi i thread non
+ * scrivono mai nelle stesse celle, e conta i record assegnati ad ogni cluster in un accumulatore locale. Gli accumulatori
+ * sono poi sommati risalendo l'albero dei compiti: nessun thread tocca le liste dei Cluster.
+ * <br><br>
+ * Se richiesto, nello stesso passaggio ogni foglia accumula anche la somma delle features dei record di ogni cluster:
+ * in questo modo un'iterazione del k-means (assegnazione + nuovi centroidi) legge ogni record una sola volta, senza
+ * ripassare sui record attraverso gli indici dei cluster.
+ * <br><br>
+ * Il compito può essere rieseguito ad ogni iterazione con i centroidi aggiornati sul posto (ripristina()): l'albero dei
+ * sotto-compiti, gli accumulatori e i buffer sono creati alla prima esecuzione e poi riutilizzati, quindi il ciclo del
+ * K-Means non alloca memoria ad ogni iterazione. Ogni foglia conta anche i record che hanno cambiato etichetta e somma
+ * i quadrati delle distanze dei record dal proprio centroide (inerzia), già calcolate per trovare il piu vicino.
+ * <br><br>
+ * Se richieste, nello stesso passaggio sono accumulate anche le statistiche dei cluster: per ogni cluster il massimo dei
+ * quadrati delle distanze dal centroide (già calcolati per trovare il piu vicino), e per ogni feature la somma degli
+ * scarti dal centroide e dei loro quadrati (da cui si ottengono somma dei quadrati e varianze rispetto alla media del
+ * cluster). Costano un confronto e 2·d operazioni in piu per record, senza radici, quindi il K-Means può accumularle in
+ * ogni iterazione e usare quelle dell'ultima, senza un passaggio in piu sui record.
+ * @author Giuseppe Accardo
+ * @version 1.0
+ * @since   14-02-2017
+ * @see DataMining
+ * @see PoolCalcolo
+ * @see KernelDistanza
+ */
+@SuppressWarnings("serial")
+public class TaskAssegnazione extends RecursiveAction
+{
+	/** Numero minimo di record di un compito foglia **/
+	private static final int MINIMO_BLOCCO = 1024;
+	/** Numero massimo di compiti foglia in cui è diviso un passaggio sui record **/
+	private static final int MASSIMO_COMPITI = 256;
+	/** Dataset (in sola lettura) **/
+	private final Dataset dataset;
+	/** Centroidi correnti (in sola lettura) **/
+	private final double[][] centroidi;
+	/** Etichette di tutti i record: il task scrive solo in [inizio, fine) **/
+	private final int[] etichette;
+	/** Intervallo di record del task **/
+	private final int inizio, fine;
+	/** Dimensione sotto la quale l'intervallo non viene piu diviso **/
+	private final int soglia;
+	/** true se bisogna accumulare anche le somme delle features **/
+	private final boolean accumulaSomme;
+	/** true se bisogna accumulare anche le statistiche dei cluster **/
+	private final boolean accumulaStatistiche;
+	/** Numero di record assegnati ad ogni cluster nell'intervallo **/
+	private int[] conteggi;
+	/** Somma delle features dei record di ogni cluster (cluster j, feature f in posizione j*d+f) **/
+	private double[] somme;
+	/** Massimo dei quadrati delle distanze dei record dal centroide di ogni cluster (solo con le statistiche) **/
+	private double[] raggiQuadrati;
+	/** Somma degli scarti dal centroide, e dei loro quadrati, per cluster e feature (solo con le statistiche) **/
+	private double[] scarti, scartiQuadrati;
+	/** Numero di record dell'intervallo che hanno cambiato etichetta **/
+	private int cambiati;
+	/** Somma dei quadrati delle distanze dei record dell'intervallo dal proprio centroide **/
+	private double inerzia;
+	/** Sotto-compiti, creati alla prima esecuzione e riutilizzati **/
+	private TaskAssegnazione sinistra, destra;
+	/** Buffer del record corrente (solo nelle foglie) **/
+	private double[] punto;
+
+	/**
+	 * Costruttore del compito su un intervallo di record
+	 * @param dataset dataset da assegnare
+	 * @param centroidi centroidi dei cluster
+	 * @param etichette array in cui scrivere l'indice del cluster di ogni record
+	 * @param inizio primo record dell'intervallo
+	 * @param fine record successivo all'ultimo dell'intervallo
+	 * @param soglia dimensione minima di un intervallo da dividere
+	 */
+	public TaskAssegnazione(Dataset dataset, double[][] centroidi, int[] etichette, int inizio, int fine, int soglia)
+	{
+		this(dataset, centroidi, etichette, inizio, fine, soglia, false);
+	}
+
+	/**
+	 * Costruttore del compito su un intervallo di record che, se richiesto, accumula anche le somme delle features
+	 * @param dataset dataset da assegnare
+	 * @param centroidi centroidi dei cluster
+	 * @param etichette array in cui scrivere l'indice del cluster di ogni record
+	 * @param inizio primo record dell'intervallo
+	 * @param fine record successivo all'ultimo dell'intervallo
+	 * @param soglia dimensione minima di un intervallo da dividere
+	 * @param accumulaSomme true per accumulare le somme delle features per cluster
+	 */
+	public TaskAssegnazione(Dataset dataset, double[][] centroidi, int[] etichette, int inizio, int fine, int soglia,
+							boolean accumulaSomme)
+	{
+		this(dataset, centroidi, etichette, inizio, fine, soglia, accumulaSomme, false);
+	}
+
+	/**
+	 * Costruttore del compito su un intervallo di record che, se richiesto, accumula anche le somme delle features e le
+	 * statistiche dei cluster
+	 * @param dataset dataset da assegnare
+	 * @param centroidi centroidi dei cluster
+	 * @param etichette array in cui scrivere l'indice del cluster di ogni record
+	 * @param inizio primo record dell'intervallo
+	 * @param fine record successivo all'ultimo dell'intervallo
+	 * @param soglia dimensione minima di un intervallo da dividere
+	 * @param accumulaSomme true per accumulare le somme delle features per cluster
+	 * @param accumulaStatistiche true per accumulare le statistiche dei cluster
+	 */
+	public TaskAssegnazione(Dataset dataset, double[][] centroidi, int[] etichette, int inizio, int fine, int soglia,
+							boolean accumulaSomme, boolean accumulaStatistiche)
+	{
+		this.dataset = dataset;
+		this.centroidi = centroidi;
+		this.etichette = etichette;
+		this.inizio = inizio;
+		this.fine = fine;
+		this.soglia = Math.max(soglia, 1);
+		this.accumulaSomme = accumulaSomme;
+		this.accumulaStatistiche = accumulaStatistiche;
+	}
+
+	/**
+	 * Calcola una soglia che produca abbastanza compiti da bilanciare il carico (fino a 256, alcuni per ogni thread
+	 * anche sui server con molti core). La soglia dipende solo dal numero di record e non dal numero di thread del pool:
+	 * la divisione in blocchi, l'ordine delle somme parziali e i generatori casuali per blocco (k-means||) sono gli
+	 * stessi su qualunque macchina, quindi lo stesso seme produce lo stesso risultato qualunque sia il numero di core.
+	 * @param numRecord numero di record da assegnare
+	 * @return soglia di divisione
+	 */
+	public static int soglia(int numRecord)
+	{
+		return Math.max(MINIMO_BLOCCO, numRecord / MASSIMO_COMPITI);
+	}
+
+	/**
+	 * Prepara il compito, e i sotto-compiti già creati, per una nuova esecuzione (es. con i centroidi aggiornati)
+	 */
+	public void ripristina()
+	{
+		reinitialize();
+		if(sinistra != null)
+		{
+			sinistra.ripristina();
+			destra.ripristina();
+		}
+	}
+
+	@Override
+	protected void compute()
+	{
+		if(fine - inizio <= soglia)
+		{
+			assegna();
+			return;
+		}
+		if(sinistra == null)
+		{
+			int meta = (inizio + fine) >>> 1;
+			sinistra = new TaskAssegnazione(dataset, centroidi, etichette, inizio, meta, soglia, accumulaSomme,
+											accumulaStatistiche);
+			destra = new TaskAssegnazione(dataset, centroidi, etichette, meta, fine, soglia, accumulaSomme,
+										  accumulaStatistiche);
+		}
+		invokeAll(sinistra, destra);
+		/* Unisci gli accumulatori dei due sotto-compiti */
+		conteggi = sinistra.conteggi;
+		for(int j=0; j<conteggi.length; j++)
+			conteggi[j] += destra.conteggi[j];
+		if(accumulaSomme)
+		{
+			somme = sinistra.somme;
+			for(int j=0; j<somme.length; j++)
+				somme[j] += destra.somme[j];
+		}
+		if(accumulaStatistiche)
+		{
+			raggiQuadrati = sinistra.raggiQuadrati;
+			for(int j=0; j<raggiQuadrati.length; j++)
+				raggiQuadrati[j] = Math.max(raggiQuadrati[j], destra.raggiQuadrati[j]);
+			scarti = sinistra.scarti;
+			scartiQuadrati = sinistra.scartiQuadrati;
+			for(int j=0; j<scarti.length; j++)
+			{
+				scarti[j] += destra.scarti[j];
+				scartiQuadrati[j] += destra.scartiQuadrati[j];
+			}
+		}
+		cambiati = sinistra.cambiati + destra.cambiati;
+		inerzia = sinistra.inerzia + destra.inerzia;
+	}
+
+	/**
+	 * Assegna direttamente i record dell'intervallo
+	 */
+	private void assegna()
+	{
+		int d = dataset.getFeatureUsate().size();
+		if(conteggi == null)
+		{
+			conteggi = new int[centroidi.length];
+			if(accumulaSomme)
+				somme = new double[centroidi.length * d];
+			punto = new double[d];
+		}
+		else
+		{
+			Arrays.fill(conteggi, 0);
+			if(accumulaSomme)
+				Arrays.fill(somme, 0);
+		}
+		/* Gli accumulatori delle statistiche sono creati solo se richieste */
+		if(accumulaStatistiche && raggiQuadrati == null)
+		{
+			raggiQuadrati = new double[centroidi.length];
+			scarti = new double[centroidi.length * d];
+			scartiQuadrati = new double[centroidi.length * d];
+		}
+		else if(accumulaStatistiche)
+		{
+			Arrays.fill(raggiQuadrati, 0);
+			Arrays.fill(scarti, 0);
+			Arrays.fill(scartiQuadrati, 0);
+		}
+		cambiati = 0;
+		inerzia = 0;
+		for(int i=inizio; i<fine; i++)
+		{
+			dataset.getRecord(i, punto);
+			/* Centroide piu vicino, come KernelDistanza.piuVicino ma conservando la distanza minima */
+			int cluster = 0;
+			double min = KernelDistanza.distanzaQuadrata(punto, centroidi[0]);
+			for(int j=1; j<centroidi.length; j++)
+			{
+				double dist = KernelDistanza.distanzaQuadrata(punto, centroidi[j]);
+				if(dist < min)
+				{
+					min = dist;
+					cluster = j;
+				}
+			}
+			inerzia += min;
+			if(etichette[i] != cluster)
+			{
+				etichette[i] = cluster;
+				cambiati++;
+			}
+			conteggi[cluster]++;
+			if(accumulaSomme)
+			{
+				int base = cluster * d;
+				for(int f=0; f<d; f++)
+					somme[base + f] += punto[f];
+			}
+			if(accumulaStatistiche)
+			{
+				raggiQuadrati[cluster] = Math.max(raggiQuadrati[cluster], min);
+				double[] centroide = centroidi[cluster];
+				int base = cluster * d;
+				for(int f=0; f<d; f++)
+				{
+					double scarto = punto[f] - centroide[f];
+					scarti[base + f] += scarto;
+					scartiQuadrati[base + f] += scarto * scarto;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Ottieni il numero di record che hanno cambiato etichetta (dopo l'esecuzione)
+	 * @return record che hanno cambiato cluster
+	 */
+	public int getCambiati()
+	{
+		return cambiati;
+	}
+
+	/**
+	 * Ottieni la somma dei quadrati delle distanze dei record dal centroide a cui sono stati assegnati (dopo l'esecuzione)
+	 * @return inerzia dell'assegnazione
+	 */
+	public double getInerzia()
+	{
+		return inerzia;
+	}
+
+	/**
+	 * Ottieni il numero di record assegnati ad ogni cluster (dopo l'esecuzione)
+	 * @return conteggi per cluster
+	 */
+	public int[] getConteggi()
+	{
+		return conteggi;
+	}
+
+	/**
+	 * Ottieni le statistiche dei cluster accumulate nell'ultima esecuzione (solo se richieste)
+	 * @param centroidiAssegnazione valori dei centroidi usati nell'assegnazione (i centroidi possono essere stati
+	 * aggiornati sul posto dopo l'esecuzione)
+	 * @return statistiche dei cluster, null se non accumulate
+	 */
+	public StatisticheCluster getStatistiche(double[][] centroidiAssegnazione)
+	{
+		if(!accumulaStatistiche)
+			return null;
+		return new StatisticheCluster(centroidiAssegnazione, conteggi, raggiQuadrati, scarti, scartiQuadrati);
+	}
+
+	/**
+	 * Ottieni la somma delle features per cluster (dopo l'esecuzione, solo se richiesta)
+	 * @return somme per cluster (cluster j, feature f in posizione j*d+f), null se non accumulate
+	 */
+	public double[] getSomme()
+	{
+		return somme;
+	}
+}
@@ -0,0 +1,53 @@
+package it.giuseppeaccardo.datamining.model;
+import java.util.ArrayList;
+
+/**
+ * <h1>Vista Dataset!</h1>
+ * Vista "leggera" su un sottoinsieme delle features di un altro dataset (padre). La vista non copia nessun valore: le sue
+ * colonne sono le stesse colonne del padre, semplicemente riordinate secondo le features selezionate. Creare una vista
+ * costa quindi O(numero di features), indipendentemente dal numero di record, e piu DataMining possono lavorare
+ * contemporaneamente su selezioni diverse dello stesso dataset senza duplicarlo.
+ * <br><br>
+ * Poichè le colonne sono condivise, la vista non deve essere usata per modificare i valori del dataset padre.
+ * @author Giuseppe Accardo
+ * @version 1.0
+ * @since   14-02-2017
+ * @see Dataset
+ * @see DataMining
+ */
+public class VistaDataset extends Dataset
+{
+	/** Dataset da cui la vista condivide le colonne **/
+	private final Dataset padre;
+
+	/**
+	 * Costruttore che crea la vista sulle features selezionate del padre
+	 * @param padre dataset di partenza
+	 * @param featureSelezionate posizioni delle colonne del padre da includere nella vista
+	 */
+	VistaDataset(Dataset padre, ArrayList<Integer> featureSelezionate)
+	{
+		super(padre.getNomeDataset(), padre.getFeatures());
+		this.padre = padre;
+		condividiColonne(padre, featureSelezionate);
+	}
+
+	/**
+	 * Una vista non carica dati, condivide le colonne del dataset padre
+	 * @throws UnsupportedOperationException sempre
+	 */
+	@Override
+	protected void CaricaDataset(String path)
+	{
+		throw new UnsupportedOperationException("Una vista condivide le colonne del dataset " + padre.getNomeDataset());
+	}
+
+	/**
+	 * Ottieni il dataset da cui la vista condivide le colonne
+	 * @return dataset padre
+	 */
+	public Dataset getPadre()
+	{
+		return padre;
+	}
+}
@@ -1,8 +0,0 @@
-/**
- * 
- */
-/**
- * @author giuseppeaccardo
- *
- */
-package it.giuseppeaccardo.datamining.model.ricordo;
\ No newline at end of file
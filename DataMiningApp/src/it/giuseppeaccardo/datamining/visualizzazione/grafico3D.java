@@ -136,7 +136,7 @@ public class grafico3D implements IvisualizzaGraficoStrategy {
     	 * applica la PCA, algoritmo necessario per la riduzione delle componenti in uno spazio 3D, 
     	 * senza perdere il contenuto informativo */
     	double[][] mat;
-    	if(model.getDatasetSelected().getFeatureUsate().size() > 3) mat = PCAcolt.pcaReduxMatrix(model.getDatasetSelected().toMatrix());
+    	if(model.getDatasetSelected().getFeatureUsate().size() > 3) mat = PCAcolt.pcaReduxMatrix(model.getDatasetSelected());
     	else mat = model.getDatasetSelected().toMatrix();
     	
     	//Prepara colori dei cluster